@@ -13,7 +13,6 @@ import java.io.InputStreamReader;
 import java.net.BindException;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
-import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.Timer;
 import java.util.TimerTask;
@@ -31,9 +30,16 @@ public class Initiator {
     private final int I_MESSAGE_TYPE = 0;
     private final int I_COMPLETE_JOB_NAME = 1;
     private final int I_CANCELLED_JOB_NAME = 1;
+    private final int I_REJECTED_JOB_NAME = 1;
+    private final int I_REJECTED_JOB_REASON = 2;
+    private final int I_GROUP_NAME = 1;
+    private final int I_GROUP_COMPLETED = 2;
+    private final int I_GROUP_FAILED = 3;
     private final int I_SHUTDOWN_NODE_FAILURE_NAME = 1;
     private final int I_SHUTDOWN_NODE_SUCCESS_NAME = 1;
+    private final int I_DATA_DUMP_LOAD_BALANCER_PAYLOAD = 1;
     private final int I_DATA_DUMP_NODE_NAME = 1;
+    private final int I_DATA_DUMP_NODE_PAYLOAD = 2;
     private final int I_DATA_DUMP_NODE_NAME_FAILURE = 1;
 
     // How frequently to reattempt connection to the load balancer
@@ -182,13 +188,24 @@ public class Initiator {
      * @param message The message to analyse
      */
     private void processMessage(String message) {
-        String[] args = message.split(",");
+        // Data dumps are displayed as they are, so only their header is split from the payload
+        String[] args;
+
+        if (message.startsWith(MessageTypeIn.DATA_DUMP_LOAD_BALANCER.toString() + ",")) {
+            args = message.split(",", I_DATA_DUMP_LOAD_BALANCER_PAYLOAD + 1);
+        } else if (message.startsWith(MessageTypeIn.DATA_DUMP_NODE_SUCCESS.toString() + ",")) {
+            args = message.split(",", I_DATA_DUMP_NODE_PAYLOAD + 1);
+        } else {
+            args = message.split(",");
+        }
 
         // Nice formatting
         System.out.println("\n===============================================================================");
 
+        MessageTypeIn messageType = getValidMessageType(args);
+
         // Perform appropriate action depending on the message type
-        switch (getValidMessageType(args)) {
+        switch (messageType) {
             case REGISTER_CONFIRM:
                 System.out.println("[INFO] Received '" + message + "', processing...\n");
                 System.out.println("[INFO] Successfully registered with the Load Balancer");
@@ -251,6 +268,64 @@ public class Initiator {
                     System.out.println("[INFO] Current job list:\n" + jobManager.toString());
                 }
 
+                break;
+            case GROUP_PROGRESS:
+            case GROUP_COMPLETE:
+                if (!connected) {
+                    System.err.println("[ERROR] Received '" + message + "', despite not being connected to a load balancer");
+                    break;
+                }
+
+                System.out.println("[INFO] Received '" + message + "', processing...\n");
+
+                String groupName = getValidStringArg(args, I_GROUP_NAME);
+                int groupCompleted = getValidIntArg(args, I_GROUP_COMPLETED);
+                int groupFailed = getValidIntArg(args, I_GROUP_FAILED);
+                Job group = (groupName == null) ? null : jobManager.getByName(groupName);
+
+                if (group == null || groupCompleted == -1 || groupFailed == -1) {
+                    System.out.println("[ERROR] Job group was not altered, some of the supplied information was invalid");
+                } else {
+                    group.setGroupProgress(groupCompleted, groupFailed);
+
+                    if (messageType == MessageTypeIn.GROUP_PROGRESS) {
+                        // Only the group's progress is shown, so frequent checkpoints don't reprint the whole job list
+                        System.out.println("[INFO] Job group '" + group.getName() + "' progress: " + groupCompleted + " of " + group.getGroupSize() + " complete, " + groupFailed + " cancelled or rejected");
+                    } else {
+                        jobManager.updateJobStatus(group, jobManager.getJobStatus(groupName) == JobStatus.REQUESTED_CANCEL ? JobStatus.CANCELLED : JobStatus.COMPLETE);
+
+                        System.out.println("[INFO] Job group '" + group.getName() + "' finished, " + groupCompleted + " of " + group.getGroupSize() + " complete, " + groupFailed + " cancelled or rejected\n");
+                        System.out.println("[INFO] Current job list:\n" + jobManager.toString());
+                    }
+                }
+
+                break;
+            case REJECT_JOB:
+                if (!connected) {
+                    System.err.println("[ERROR] Received '" + message + "', despite not being connected to a load balancer");
+                    break;
+                }
+
+                System.out.println("[INFO] Received '" + message + "', processing...\n");
+
+                String rejectedJobName = getValidStringArg(args, I_REJECTED_JOB_NAME);
+                String rejectedJobReason = getValidStringArg(args, I_REJECTED_JOB_REASON);
+
+                if (rejectedJobName == null) {
+                    System.out.println("[ERROR] Job was not altered, some of the supplied information was invalid");
+                } else {
+                    Job rejectedJob = jobManager.getByName(rejectedJobName);
+
+                    if (rejectedJob == null) {
+                        System.out.println("[ERROR] Job was not altered, no job with name '" + rejectedJobName + "' exists");
+                    } else {
+                        jobManager.updateJobStatus(rejectedJob, JobStatus.REJECTED);
+
+                        System.out.println("[INFO] Job '" + rejectedJob.getName() + "' rejected" + (rejectedJobReason != null ? ": " + rejectedJobReason : "") + "\n");
+                        System.out.println("[INFO] Current job list:\n" + jobManager.toString());
+                    }
+                }
+
                 break;
             case NODE_SHUTDOWN_SPECIFIC_FAILURE:
                 if (!connected) {
@@ -297,7 +372,7 @@ public class Initiator {
 
                 System.out.println("[INFO] Received an '" + args[0] + "', processing...\n");
                 System.out.println("[INFO] Received the following data dump from the load balancer for its registered client, nodes and jobs:\n\n-- Load Balancer Data Dump --");
-                System.out.println(String.join(",", Arrays.copyOfRange(args, 1, args.length)));
+                System.out.println((args.length > I_DATA_DUMP_LOAD_BALANCER_PAYLOAD) ? args[I_DATA_DUMP_LOAD_BALANCER_PAYLOAD] : "");
 
                 break;
             case DATA_DUMP_NODE_SUCCESS:
@@ -317,7 +392,7 @@ public class Initiator {
                     System.out.println("[ERROR] Some of the supplied information was invalid");
                 } else {
                     System.out.println("[INFO] Received the following data dump from the load balancer for node '" + dataDumpNodeName + "' job allocation history and thread list:\n\n-- Node '" + dataDumpNodeName + "' Data Dump --");
-                    System.out.println(String.join(",", Arrays.copyOfRange(args, 2, args.length)));
+                    System.out.println((args.length > I_DATA_DUMP_NODE_PAYLOAD) ? args[I_DATA_DUMP_NODE_PAYLOAD] : "");
                 }
 
                 break;
@@ -367,6 +442,7 @@ public class Initiator {
      */
     private enum CommandOptions {
         NEW_JOB,
+        NEW_JOB_GROUP, // Submit many jobs sharing a duration and attributes, notified of the group's progress rather than each job
         CANCEL_JOB,
         DATA_DUMP_LOAD_BALANCER, // Show connected client, connected nodes and stored jobs
         DATA_DUMP_NODES, // For every connected node, show its details, completed jobs, allocated jobs and alive non-daemon threads
@@ -415,6 +491,9 @@ public class Initiator {
 
                 System.out.print("Enter new job duration: ");
                 int jobDuration = getIntegerInput();
+
+                System.out.print("Enter job attributes as <attribute>=<value> separated by commas, e.g. weight=2 (optional): ");
+                String jobAttributes = resolveDeadline(getOptionalStringInput());
                 Job newJob = new Job(jobName, jobDuration);
 
                 boolean hasJobAdded = jobManager.addJob(newJob);
@@ -423,12 +502,39 @@ public class Initiator {
                     System.out.println("\n[ERROR] Job was not added, the supplied information matched an existing job\n");
                 } else {
                     System.out.println(""); // Space between user input and feedback text
-                    messageManager.send(MessageTypeOut.NEW_JOB.toString() + "," + jobName + "," + jobDuration, lbAddr, lbPort);
+                    messageManager.send(MessageTypeOut.NEW_JOB.toString() + "," + jobName + "," + jobDuration + (jobAttributes.isEmpty() ? "" : "," + jobAttributes), lbAddr, lbPort);
 
                     System.out.println("\n[INFO] New job added: " + newJob.toString() + "\n");
                     System.out.println("[INFO] Current job list:\n" + jobManager.toString());
                 }
 
+                break;
+            case NEW_JOB_GROUP:
+                System.out.print("Enter new job group name: ");
+                String groupName = getStringInput();
+
+                System.out.print("Enter amount of jobs in the group: ");
+                int groupSize = getIntegerInput();
+
+                System.out.print("Enter duration of each job: ");
+                int groupJobDuration = getIntegerInput();
+
+                System.out.print("Enter job attributes as <attribute>=<value> separated by commas, e.g. weight=2 (optional): ");
+                String groupJobAttributes = resolveDeadline(getOptionalStringInput());
+                Job newGroup = new Job(groupName, groupJobDuration, groupSize);
+
+                if (groupSize < 1) {
+                    System.out.println("\n[ERROR] Job group was not added, a group must contain at least one job\n");
+                } else if (!jobManager.addJob(newGroup)) {
+                    System.out.println("\n[ERROR] Job group was not added, the supplied information matched an existing job\n");
+                } else {
+                    System.out.println(""); // Space between user input and feedback text
+                    messageManager.send(MessageTypeOut.NEW_JOB_GROUP.toString() + "," + groupName + "," + groupSize + "," + groupJobDuration + (groupJobAttributes.isEmpty() ? "" : "," + groupJobAttributes), lbAddr, lbPort);
+
+                    System.out.println("\n[INFO] New job group added: " + newGroup.toString() + "\n");
+                    System.out.println("[INFO] Current job list:\n" + jobManager.toString());
+                }
+
                 break;
             case CANCEL_JOB:
                 System.out.print("Enter job name of which to cancel: ");
@@ -443,6 +549,8 @@ public class Initiator {
                         System.out.println("\n[ERROR] Cancel job request was not issued as no job with name '" + cancelJobName + "' was found");
                     } else if (jobManager.getJobStatus(cancelJobName) == JobStatus.COMPLETE) {
                         System.out.println("\n[ERROR] Cancel job request was not sent as the job is already complete");
+                    } else if (jobManager.getJobStatus(cancelJobName) == JobStatus.REJECTED) {
+                        System.out.println("\n[ERROR] Cancel job request was not sent as the job has been rejected");
                     } else {
                         jobManager.updateJobStatus(cancelJob, JobStatus.REQUESTED_CANCEL);
 
@@ -500,6 +608,9 @@ public class Initiator {
                     System.out.println(""); // Space between user input and feedback text
                     messageManager.send(MessageTypeOut.LB_SHUTDOWN.toString(), lbAddr, lbPort);
 
+                    // Give the messages just sent a moment to be acknowledged before exiting
+                    messageManager.flush(1000);
+
                     System.out.println("[INFO] Shutting down...");
                     System.exit(0);
                 } else {
@@ -597,6 +708,51 @@ public class Initiator {
         return userInput;
     }
 
+    /**
+     * Get optional string input from the user, which may be left empty
+     *
+     * @return The string entered by the user with surrounding whitespace removed, or an empty string if none entered
+     */
+    private String getOptionalStringInput() {
+        try {
+            String userInput = keyboard.readLine();
+
+            return (userInput == null) ? "" : userInput.trim();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return "";
+    }
+
+    /**
+     * Convert a deadline attribute given relative to now, as deadline=+<seconds>, into the absolute deadline in
+     * milliseconds since the epoch expected by the load balancer
+     *
+     * @param jobAttributes The job attributes entered by the user
+     *
+     * @return The job attributes with any relative deadline made absolute
+     */
+    private String resolveDeadline(String jobAttributes) {
+        String[] attributes = jobAttributes.split(",");
+
+        for (int i = 0; i < attributes.length; i++) {
+            String[] attribute = attributes[i].split("=", 2);
+
+            if (attribute.length == 2 && attribute[0].trim().equalsIgnoreCase("deadline") && attribute[1].trim().startsWith("+")) {
+                try {
+                    long relativeDeadline = Long.parseLong(attribute[1].trim().substring(1));
+
+                    attributes[i] = "deadline=" + (System.currentTimeMillis() + (relativeDeadline * 1000));
+                } catch (NumberFormatException ignored) {
+                    // Left as entered, the load balancer will reject the invalid attribute
+                }
+            }
+        }
+
+        return String.join(",", attributes);
+    }
+
     /**
      * Validate the MessageTypeIn of the message
      *
@@ -11,6 +11,13 @@ public class Job {
     private String name;
     private int duration;
 
+    // The amount of jobs in the group if the job represents a job group, otherwise 0
+    private int groupSize;
+
+    // The progress of the group, how many of its jobs have completed and how many were cancelled or rejected
+    private int groupCompleted;
+    private int groupFailed;
+
     /**
      * Create a new job with the supplied name and duration
      *
@@ -18,8 +25,20 @@ public class Job {
      * @param duration The duration of the job
      */
     public Job(String name, int duration) {
+        this(name, duration, 0);
+    }
+
+    /**
+     * Create a new job group with the supplied name, duration of each job and amount of jobs
+     *
+     * @param name      The name of the job group
+     * @param duration  The duration of each job in the group
+     * @param groupSize The amount of jobs in the group
+     */
+    public Job(String name, int duration, int groupSize) {
         this.name = name;
         this.duration = duration;
+        this.groupSize = groupSize;
     }
 
     /**
@@ -36,11 +55,29 @@ public class Job {
         return this.duration;
     }
 
+    /**
+     * @return The amount of jobs in the group if the job represents a job group, otherwise 0
+     */
+    public int getGroupSize() {
+        return this.groupSize;
+    }
+
+    /**
+     * Update the progress of the job group
+     *
+     * @param completed The amount of jobs in the group that have completed
+     * @param failed    The amount of jobs in the group that were cancelled or rejected
+     */
+    public void setGroupProgress(int completed, int failed) {
+        this.groupCompleted = completed;
+        this.groupFailed = failed;
+    }
+
     /**
      * @return The job formatted as a string of properties
      */
     @Override
     public String toString() {
-        return "Name: " + name + ", Duration: " + duration;
+        return "Name: " + name + ", Duration: " + duration + (groupSize > 0 ? ", Group Size: " + groupSize + ", Completed: " + groupCompleted + ", Failed: " + groupFailed : "");
     }
 }
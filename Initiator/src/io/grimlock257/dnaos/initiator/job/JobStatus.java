@@ -11,5 +11,6 @@ public enum JobStatus {
     QUEUED,
     COMPLETE,
     REQUESTED_CANCEL,
-    CANCELLED
+    CANCELLED,
+    REJECTED
 }
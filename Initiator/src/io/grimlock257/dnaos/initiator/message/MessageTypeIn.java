@@ -18,5 +18,8 @@ public enum MessageTypeIn {
     DATA_DUMP_NODE_FAILURE,
     DATA_DUMP_NODE_SUCCESS,
     CANCEL_JOB_CONFIRM,
+    REJECT_JOB,
+    GROUP_PROGRESS,
+    GROUP_COMPLETE,
     UNKNOWN
 }
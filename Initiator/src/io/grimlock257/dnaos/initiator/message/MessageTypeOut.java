@@ -10,6 +10,7 @@ package io.grimlock257.dnaos.initiator.message;
 public enum MessageTypeOut {
     INITIATOR_REGISTER,
     NEW_JOB,
+    NEW_JOB_GROUP,
     LB_SHUTDOWN,
     NODE_SHUTDOWN_SPECIFIC,
     DATA_DUMP_LOAD_BALANCER,
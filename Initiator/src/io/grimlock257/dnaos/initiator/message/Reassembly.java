@@ -0,0 +1,75 @@
+package io.grimlock257.dnaos.initiator.message;
+
+/**
+ * Represents a large message being reassembled from the fragments it was sent in, within the Initiator project
+ *
+ * Adam Watson
+ * Year 2 - Computer Systems Engineering
+ * Distributed Network Architecture & Operating Systems Module CW-2
+ */
+public class Reassembly {
+    private char[] message;
+    private int received;
+
+    // When the last fragment was received, so a message whose remaining fragments never arrive can be discarded
+    private long lastReceived;
+
+    /**
+     * Create a new reassembly for a message of the supplied length
+     *
+     * @param length The length of the whole message
+     */
+    public Reassembly(int length) {
+        this.message = new char[length];
+        this.received = 0;
+        this.lastReceived = System.currentTimeMillis();
+    }
+
+    /**
+     * @return The length of the whole message
+     */
+    public int getLength() {
+        return this.message.length;
+    }
+
+    /**
+     * @return When the last fragment was received, in milliseconds
+     */
+    public long getLastReceived() {
+        return this.lastReceived;
+    }
+
+    /**
+     * Add a fragment of the message in its place
+     *
+     * @param offset   Where the fragment starts within the message
+     * @param fragment The fragment
+     *
+     * @return Whether or not the fragment fits within the message
+     */
+    public boolean addFragment(int offset, String fragment) {
+        if (offset < 0 || offset + fragment.length() > message.length) {
+            return false;
+        }
+
+        fragment.getChars(0, fragment.length(), message, offset);
+        received += fragment.length();
+        lastReceived = System.currentTimeMillis();
+
+        return true;
+    }
+
+    /**
+     * @return Whether or not every fragment of the message has been received
+     */
+    public boolean isComplete() {
+        return received >= message.length;
+    }
+
+    /**
+     * @return The reassembled message
+     */
+    public String getMessage() {
+        return new String(message);
+    }
+}
@@ -0,0 +1,243 @@
+package io.grimlock257.dnaos.initiator.message;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+
+/**
+ * Represents the stream of messages sent reliably to another program, within the Initiator project
+ * Messages sent on the stream are numbered and kept until acknowledged, being retransmitted after a timeout adapted to
+ * the measured round trip time. Each stream is identified by a random id, so acknowledgements are matched to the
+ * stream however the recipient addresses them, and a restarted program starts new streams rather than reusing numbers.
+ * No more messages are in flight at once than the recipient's window remembers, later messages being held until the
+ * oldest in flight are acknowledged, so the recipient never has to give up on a gap the sender is still retransmitting
+ *
+ * Adam Watson
+ * Year 2 - Computer Systems Engineering
+ * Distributed Network Architecture & Operating Systems Module CW-2
+ */
+public class SendStream {
+    // Bounds of the retransmission timeout, in milliseconds
+    private final long INITIAL_TIMEOUT = 1000;
+    private final long MINIMUM_TIMEOUT = 200;
+    private final long MAXIMUM_TIMEOUT = 10_000;
+
+    // How many sequence numbers may be in flight at once, the size of the window of the receiving stream
+    private final int SEND_WINDOW = 1024;
+
+    private long id;
+    private InetAddress addr;
+    private int port;
+
+    // Messages sent on the stream, awaiting acknowledgement
+    private long nextSequence = 1;
+    private LinkedHashMap<Long, PendingMessage> unacknowledged;
+
+    // Messages waiting for room in the window before they are numbered and sent
+    private LinkedList<String> heldMessages;
+
+    // Round trip time estimation, in milliseconds
+    private double smoothedRtt = 0;
+    private double rttVariance = 0;
+    private long timeout = INITIAL_TIMEOUT;
+
+    // The version of the compression dictionary the recipient has accepted, 0 if it hasn't accepted compression
+    private int compressionVersion = 0;
+
+    /**
+     * Create a new stream of messages to the supplied recipient
+     *
+     * @param id   The random id of the stream
+     * @param addr The address of the recipient
+     * @param port The port of the recipient
+     */
+    public SendStream(long id, InetAddress addr, int port) {
+        this.id = id;
+        this.addr = addr;
+        this.port = port;
+        this.unacknowledged = new LinkedHashMap<>();
+        this.heldMessages = new LinkedList<>();
+    }
+
+    /**
+     * @return The id of the stream
+     */
+    public long getId() {
+        return this.id;
+    }
+
+    /**
+     * @return The version of the compression dictionary the recipient has accepted, 0 if it hasn't accepted compression
+     */
+    public int getCompressionVersion() {
+        return this.compressionVersion;
+    }
+
+    /**
+     * @param compressionVersion The version of the compression dictionary the recipient has accepted
+     */
+    public void setCompressionVersion(int compressionVersion) {
+        this.compressionVersion = compressionVersion;
+    }
+
+    /**
+     * @return The address of the recipient
+     */
+    public InetAddress getAddr() {
+        return this.addr;
+    }
+
+    /**
+     * @return The port of the recipient
+     */
+    public int getPort() {
+        return this.port;
+    }
+
+    /**
+     * Number a message being sent on the stream, keeping it until it is acknowledged. If the window is full the message
+     * is held, and is numbered and sent once the messages ahead of it are acknowledged or given up on
+     *
+     * @param message The message being sent
+     *
+     * @return The numbered message to send now, or null if the message is held
+     */
+    public synchronized PendingMessage addMessage(String message) {
+        if (!heldMessages.isEmpty() || !hasRoom()) {
+            heldMessages.add(message);
+
+            return null;
+        }
+
+        return number(message);
+    }
+
+    /**
+     * Number the held messages for which there is now room in the window, as they are about to be sent
+     *
+     * @return The numbered messages to send now, in order
+     */
+    public synchronized ArrayList<PendingMessage> releaseHeldMessages() {
+        ArrayList<PendingMessage> releasedMessages = new ArrayList<>();
+
+        while (!heldMessages.isEmpty() && hasRoom()) {
+            releasedMessages.add(number(heldMessages.poll()));
+        }
+
+        return releasedMessages;
+    }
+
+    /**
+     * @return Whether or not another message can be sent without going beyond the recipient's window of the oldest
+     * message in flight
+     */
+    private boolean hasRoom() {
+        return unacknowledged.isEmpty() || nextSequence - unacknowledged.keySet().iterator().next() < SEND_WINDOW;
+    }
+
+    /**
+     * Give a message the next sequence number, keeping it until it is acknowledged
+     *
+     * @param message The message being sent
+     *
+     * @return The numbered message
+     */
+    private PendingMessage number(String message) {
+        PendingMessage pendingMessage = new PendingMessage(nextSequence++, message);
+
+        unacknowledged.put(pendingMessage.getSequence(), pendingMessage);
+
+        return pendingMessage;
+    }
+
+    /**
+     * Process an acknowledgement from the recipient, forgetting the acknowledged messages and measuring the round trip
+     * time from any which were only sent once (a retransmitted message can't tell which copy was acknowledged)
+     *
+     * @param receivedUpTo The sequence number up to which the recipient has received every message
+     * @param selective    The sequence numbers the recipient has received beyond a gap
+     */
+    public synchronized void acknowledge(long receivedUpTo, ArrayList<Long> selective) {
+        long now = System.currentTimeMillis();
+        ArrayList<PendingMessage> acknowledged = new ArrayList<>();
+
+        for (PendingMessage pendingMessage : unacknowledged.values()) {
+            if (pendingMessage.getSequence() <= receivedUpTo || selective.contains(pendingMessage.getSequence())) {
+                acknowledged.add(pendingMessage);
+            }
+        }
+
+        for (PendingMessage pendingMessage : acknowledged) {
+            unacknowledged.remove(pendingMessage.getSequence());
+
+            if (pendingMessage.getAttempts() == 1) {
+                recordRoundTrip(now - pendingMessage.getLastSent());
+            }
+        }
+    }
+
+    /**
+     * Update the estimated round trip time and the retransmission timeout with a new measurement
+     *
+     * @param roundTrip The measured round trip time, in milliseconds
+     */
+    private void recordRoundTrip(long roundTrip) {
+        if (smoothedRtt == 0) {
+            smoothedRtt = roundTrip;
+            rttVariance = roundTrip / 2.0;
+        } else {
+            rttVariance = (0.75 * rttVariance) + (0.25 * Math.abs(smoothedRtt - roundTrip));
+            smoothedRtt = (0.875 * smoothedRtt) + (0.125 * roundTrip);
+        }
+
+        timeout = Math.max(MINIMUM_TIMEOUT, Math.min(MAXIMUM_TIMEOUT, (long) (smoothedRtt + (4 * rttVariance))));
+    }
+
+    /**
+     * Fetch the messages which have gone unacknowledged for longer than the retransmission timeout, recording them as
+     * being sent again. The timeout is doubled each time it expires, so a congested or unreachable recipient isn't flooded
+     *
+     * @return The messages to retransmit
+     */
+    public synchronized ArrayList<PendingMessage> getDueRetransmissions() {
+        ArrayList<PendingMessage> dueMessages = new ArrayList<>();
+        long now = System.currentTimeMillis();
+
+        for (PendingMessage pendingMessage : unacknowledged.values()) {
+            if (now - pendingMessage.getLastSent() >= timeout) {
+                pendingMessage.recordRetransmission();
+                dueMessages.add(pendingMessage);
+            }
+        }
+
+        if (!dueMessages.isEmpty()) {
+            timeout = Math.min(MAXIMUM_TIMEOUT, timeout * 2);
+        }
+
+        return dueMessages;
+    }
+
+    /**
+     * Stop retransmitting a message which the recipient has never acknowledged
+     *
+     * @param sequence The sequence number of the message
+     */
+    public synchronized void abandon(long sequence) {
+        unacknowledged.remove(sequence);
+    }
+
+    /**
+     * @return How many messages sent on the stream are still awaiting acknowledgement, including those held
+     */
+    public synchronized int getUnacknowledgedCount() {
+        return unacknowledged.size() + heldMessages.size();
+    }
+
+    /**
+     * @return Whether or not any message sent on the stream is still awaiting acknowledgement, including those held
+     */
+    public synchronized boolean hasUnacknowledged() {
+        return !unacknowledged.isEmpty() || !heldMessages.isEmpty();
+    }
+}
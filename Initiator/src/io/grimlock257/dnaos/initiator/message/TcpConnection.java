@@ -0,0 +1,191 @@
+package io.grimlock257.dnaos.initiator.message;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedList;
+
+/**
+ * Represents a TCP connection to or from another program, within the Initiator project
+ * Messages are sent over the connection as frames, each being the length of the message in bytes followed by the
+ * message. Frames queued while the connection is busy are written together in a single gathering write
+ *
+ * Adam Watson
+ * Year 2 - Computer Systems Engineering
+ * Distributed Network Architecture & Operating Systems Module CW-2
+ */
+public class TcpConnection {
+    // The size of the buffer frames are read into, grown when a larger frame arrives
+    private final int INITIAL_READ_BUFFER_SIZE = 64 * 1024;
+
+    private SocketChannel channel;
+
+    // The recipient of an outgoing connection, null for a connection accepted from another program
+    private InetAddress addr;
+    private int port;
+
+    private LinkedList<ByteBuffer> writeQueue;
+    private ByteBuffer readBuffer;
+
+    /**
+     * Create a new TCP connection over the supplied channel
+     *
+     * @param channel The non-blocking channel of the connection
+     * @param addr    The address of the recipient, null if the connection was accepted from another program
+     * @param port    The port of the recipient
+     */
+    public TcpConnection(SocketChannel channel, InetAddress addr, int port) {
+        this.channel = channel;
+        this.addr = addr;
+        this.port = port;
+        this.writeQueue = new LinkedList<>();
+        this.readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+    }
+
+    /**
+     * @return The channel of the connection
+     */
+    public SocketChannel getChannel() {
+        return this.channel;
+    }
+
+    /**
+     * @return The address of the recipient, null if the connection was accepted from another program
+     */
+    public InetAddress getAddr() {
+        return this.addr;
+    }
+
+    /**
+     * @return The port of the recipient
+     */
+    public int getPort() {
+        return this.port;
+    }
+
+    /**
+     * Queue a message to be written to the connection as a frame
+     *
+     * @param message The message to send
+     */
+    public synchronized void queue(String message) {
+        byte[] data = message.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(4 + data.length);
+
+        frame.putInt(data.length).put(data).flip();
+
+        writeQueue.add(frame);
+    }
+
+    /**
+     * @return Whether or not any frames are waiting to be written
+     */
+    public synchronized boolean hasQueued() {
+        return !writeQueue.isEmpty();
+    }
+
+    /**
+     * Write as many of the queued frames as the connection will currently accept, all in one gathering write
+     *
+     * @throws IOException When the connection has failed
+     */
+    public synchronized void write() throws IOException {
+        if (writeQueue.isEmpty()) {
+            return;
+        }
+
+        channel.write(writeQueue.toArray(new ByteBuffer[0]));
+
+        while (!writeQueue.isEmpty() && !writeQueue.peek().hasRemaining()) {
+            writeQueue.poll();
+        }
+    }
+
+    /**
+     * Read what is available from the connection, returning every frame which has now been fully received
+     *
+     * @param maximumFrameLength The longest frame accepted, in bytes
+     *
+     * @return The messages received, or null if the other program has closed the connection
+     *
+     * @throws IOException When the connection has failed or a frame is longer than allowed
+     */
+    public ArrayList<String> read(int maximumFrameLength) throws IOException {
+        ArrayList<String> messages = new ArrayList<>();
+
+        if (channel.read(readBuffer) == -1) {
+            return null;
+        }
+
+        readBuffer.flip();
+
+        int neededLength = 0;
+
+        while (readBuffer.remaining() >= 4) {
+            int length = readBuffer.getInt(readBuffer.position());
+
+            if (length < 0 || length > maximumFrameLength) {
+                throw new IOException("Frame of " + length + " bytes exceeds the maximum frame length");
+            }
+
+            if (readBuffer.remaining() < 4 + length) {
+                neededLength = 4 + length;
+
+                break;
+            }
+
+            byte[] data = new byte[length];
+
+            readBuffer.position(readBuffer.position() + 4);
+            readBuffer.get(data);
+
+            messages.add(new String(data, StandardCharsets.UTF_8));
+        }
+
+        readBuffer.compact();
+
+        // Grow the buffer if the frame being received won't fit in it
+        if (neededLength > readBuffer.capacity()) {
+            ByteBuffer largerBuffer = ByteBuffer.allocate(neededLength);
+
+            readBuffer.flip();
+            largerBuffer.put(readBuffer);
+            readBuffer = largerBuffer;
+        }
+
+        return messages;
+    }
+
+    /**
+     * Remove the messages which haven't started to be written, so they can be sent another way
+     *
+     * @return The unsent messages
+     */
+    public synchronized ArrayList<String> drainUnsent() {
+        ArrayList<String> unsentMessages = new ArrayList<>();
+
+        for (ByteBuffer frame : writeQueue) {
+            if (frame.position() == 0) {
+                unsentMessages.add(new String(frame.array(), 4, frame.limit() - 4, StandardCharsets.UTF_8));
+            }
+        }
+
+        writeQueue.clear();
+
+        return unsentMessages;
+    }
+
+    /**
+     * Close the connection
+     */
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // The connection is being discarded either way
+        }
+    }
+}
@@ -9,5 +9,9 @@ package io.grimlock257.dnaos.loadbalancer;
  */
 public enum AllocationMethod {
     WEIGHTED,
-    NON_WEIGHTED
+    NON_WEIGHTED,
+    PREDICTED_COMPLETION,
+    BEST_FIT,
+    FIRST_FIT_DECREASING,
+    CONSISTENT_HASHING
 }
@@ -1,12 +1,17 @@
 package io.grimlock257.dnaos.loadbalancer;
 
 import io.grimlock257.dnaos.loadbalancer.job.Job;
+import io.grimlock257.dnaos.loadbalancer.job.JobGroup;
 import io.grimlock257.dnaos.loadbalancer.job.JobStatus;
+import io.grimlock257.dnaos.loadbalancer.job.LabelSelector;
+import io.grimlock257.dnaos.loadbalancer.managers.DurationManager;
 import io.grimlock257.dnaos.loadbalancer.managers.JobManager;
 import io.grimlock257.dnaos.loadbalancer.managers.MessageManager;
 import io.grimlock257.dnaos.loadbalancer.managers.NodeManager;
+import io.grimlock257.dnaos.loadbalancer.managers.ResultCacheManager;
 import io.grimlock257.dnaos.loadbalancer.message.MessageTypeIn;
 import io.grimlock257.dnaos.loadbalancer.message.MessageTypeOut;
+import io.grimlock257.dnaos.loadbalancer.message.Transport;
 import io.grimlock257.dnaos.loadbalancer.node.Node;
 
 import java.io.BufferedReader;
@@ -15,7 +20,8 @@ import java.io.InputStreamReader;
 import java.net.BindException;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 
 /**
  * This class represents the Load Balancer and all it's functionality
@@ -33,15 +39,33 @@ public class LoadBalancer {
     private final int I_NODE_PORT = 2;
     private final int I_NODE_NAME = 3;
     private final int I_NODE_CAP = 4;
+    private final int I_NODE_SCORE = 5;
+    private final int I_NODE_RESOURCES = 6;
     private final int I_JOB_NAME = 1;
     private final int I_JOB_DURATION = 2;
+    private final int I_JOB_ATTRIBUTES = 3;
+    private final int I_GROUP_NAME = 1;
+    private final int I_GROUP_SIZE = 2;
+    private final int I_GROUP_DURATION = 3;
+    private final int I_GROUP_ATTRIBUTES = 4;
     private final int I_COMPLETE_JOB_NAME = 1;
+    private final int I_COMPLETE_JOB_NODE_NAME = 2;
+    private final int I_COMPLETE_JOB_RUNTIME = 3;
     private final int I_CANCEL_REQUEST_JOB_NAME = 1;
     private final int I_CANCELLED_JOB_NAME = 1;
+    private final int I_CANCELLED_JOB_NODE_NAME = 2;
     private final int I_SHUTDOWN_NODE_NAME = 1;
     private final int I_DATA_DUMP_NODE_NAME = 1;
+    private final int I_DATA_DUMP_NODE_PAYLOAD = 2;
     private final int I_IS_ALIVE_NODE_NAME = 1;
     private final int I_NODE_RESIGN_NAME = 1;
+    private final int I_STEAL_VICTIM_NAME = 1;
+    private final int I_STEAL_JOB_NAME = 2;
+    private final int I_STEAL_THIEF_NAME = 3;
+    private final int I_STEAL_FAILURE_VICTIM_NAME = 1;
+    private final int I_STEAL_FAILURE_THIEF_NAME = 2;
+    private final int I_CAPACITY_UPDATE_NODE_NAME = 1;
+    private final int I_CAPACITY_UPDATE_CAPACITY = 2;
 
     // Information about the connected initiator
     private String initiatorIP;
@@ -60,9 +84,47 @@ public class LoadBalancer {
     private MessageManager messageManager;
     private NodeManager nodeManager;
     private JobManager jobManager;
+    private DurationManager durationManager;
+    private ResultCacheManager resultCacheManager;
 
     private AllocationMethod allocationMethod;
 
+    // How frequently to check for jobs running far beyond their expected duration
+    private final int STRAGGLER_CHECK_INTERVAL = 1000;
+
+    // The multiple of a job's duration after which a speculative copy is launched, 0 disables speculative execution
+    private double stragglerFactor = 2.0;
+    private long lastStragglerCheck = 0;
+
+    // How frequently to check for waiting jobs which can no longer meet their deadline
+    private final int DEADLINE_CHECK_INTERVAL = 250;
+    private long lastDeadlineCheck = 0;
+
+    // How frequently an idle node is looked for to steal a queued job from a backed up node
+    private final int STEAL_CHECK_INTERVAL = 250;
+    private long lastStealCheck = 0;
+
+    // How frequently a reservation is recalculated and jobs to backfill are looked for, while the reserved job waits
+    private final int BACKFILL_CHECK_INTERVAL = 250;
+    private long lastBackfillCheck = 0;
+
+    // How far above its fair share of the load a node may be loaded by consistent hashing, 1.25 allows 25% above
+    private double loadBound = 1.25;
+
+    // How many completed jobs to remember results for and for how long in seconds, a size of 0 disables the result cache
+    private int resultCacheSize = 0;
+    private int resultCacheTtl = 300;
+
+    // Whether a job at the head of the queue which can't start straight away holds a reservation while later jobs are
+    // backfilled, rather than waiting in a node's local queue (gang jobs always hold a reservation)
+    private boolean backfill = false;
+
+    // The transport used to send messages, messages are received over both UDP and TCP regardless
+    private Transport transport = Transport.UDP;
+
+    // The job at the head of the queue which can't start yet, holding a reservation until it can
+    private Job reservedJob = null;
+
     // Store a reference to the keyboard
     private BufferedReader keyboard;
 
@@ -77,6 +139,62 @@ public class LoadBalancer {
         this.allocationMethod = allocationMethod;
     }
 
+    /**
+     * Set the multiple of a job's duration that a job may run for before a speculative copy is launched on another node
+     *
+     * @param stragglerFactor The straggler factor, 0 to disable speculative execution
+     */
+    public void setStragglerFactor(double stragglerFactor) {
+        this.stragglerFactor = stragglerFactor;
+    }
+
+    /**
+     * Set how far above its fair share of the load a node may be loaded when allocating with consistent hashing
+     *
+     * @param loadBound The load bound, at least 1.0
+     */
+    public void setLoadBound(double loadBound) {
+        this.loadBound = Math.max(1.0, loadBound);
+    }
+
+    /**
+     * Set how many completed jobs identical work can be answered from, and for how long after the job completed
+     *
+     * @param resultCacheSize The maximum amount of completed jobs to remember, 0 to disable the result cache
+     */
+    public void setResultCacheSize(int resultCacheSize) {
+        this.resultCacheSize = Math.max(0, resultCacheSize);
+    }
+
+    /**
+     * Set how long a completed job can be used to answer identical work for
+     *
+     * @param resultCacheTtl How long a completed job is remembered for, in seconds
+     */
+    public void setResultCacheTtl(int resultCacheTtl) {
+        this.resultCacheTtl = Math.max(0, resultCacheTtl);
+    }
+
+    /**
+     * Set whether a job at the head of the queue which can't start straight away reserves the earliest time it can,
+     * while later jobs predicted to complete before then, or only using resources it won't need, are backfilled into
+     * the free slots
+     *
+     * @param backfill Whether or not to use EASY backfilling
+     */
+    public void setBackfill(boolean backfill) {
+        this.backfill = backfill;
+    }
+
+    /**
+     * Set the transport used to send messages, either UDP packets or frames over persistent TCP connections
+     *
+     * @param transport The transport to send messages over
+     */
+    public void setTransport(Transport transport) {
+        this.transport = transport;
+    }
+
     /**
      * Try to open the DatagramSocket, if successful create the managers, connect and begin the main loop
      */
@@ -86,10 +204,15 @@ public class LoadBalancer {
             socket.setSoTimeout(0);
 
             messageManager = MessageManager.getInstance();
+            messageManager.setTransport(transport);
             messageManager.init(socket);
             nodeManager = NodeManager.getInstance();
             nodeManager.setAllocationMethod(allocationMethod);
+            nodeManager.setLoadBound(loadBound);
             jobManager = JobManager.getInstance();
+            durationManager = DurationManager.getInstance();
+            resultCacheManager = ResultCacheManager.getInstance();
+            resultCacheManager.setLimits(resultCacheSize, resultCacheTtl * 1000L);
 
             keyboard = new BufferedReader(new InputStreamReader(System.in));
 
@@ -148,30 +271,217 @@ public class LoadBalancer {
                 processMessage(nextMessage);
             }
 
-            // Allocate a job (if available)
-            Job nextJob = jobManager.getNextJob();
+            // Allocate a job (if available), heaviest first when packing with first-fit decreasing. A job holding a
+            // reservation stays at the head of the queue until it can start
+            Job nextJob = (reservedJob != null && jobManager.getJobStatus(reservedJob) == JobStatus.UNALLOCATED) ? reservedJob : (allocationMethod == AllocationMethod.FIRST_FIT_DECREASING) ? jobManager.getHeaviestNextJob() : jobManager.getNextJob();
 
-            if (nextJob != null) {
-                Node freestNode = nodeManager.getFreestNode();
+            if (nextJob != null && nextJob.getGang() > 1) {
+                // A gang job only starts once every one of its parts can start at the same time
+                if (nodeManager.getFreeChunkCount(nextJob) >= nextJob.getGang()) {
+                    reservedJob = null;
 
-                if (freestNode != null) {
                     System.out.println("===============================================================================");
-                    System.out.println("[INFO] Allocating job '" + nextJob.getName() + "'...\n");
-                    System.out.println("[INFO] Current nodes:\n" + nodeManager.toString() + "\n");
-                    System.out.println("[INFO] Previous job list:\n" + jobManager.toString() + "\n");
+                    System.out.println("[INFO] Starting gang job '" + nextJob.getName() + "' as " + nextJob.getGang() + " parts...\n");
 
-                    jobManager.allocateJob(nextJob, freestNode);
-                    System.out.println("[INFO] Current job list:\n" + jobManager.toString() + "\n");
+                    for (Job part : jobManager.startGang(nextJob)) {
+                        dispatchJob(part, nodeManager.getFreeNode(part));
+                    }
+                } else {
+                    reserveJob(nextJob);
+                }
+            } else if (nextJob != null && backfill && nodeManager.getFreeChunkCount(nextJob) == 0) {
+                // With EASY backfilling a job that can't start straight away holds a reservation rather than queueing
+                reserveJob(nextJob);
+            } else if (nextJob != null) {
+                reservedJob = null;
 
-                    messageManager.send(MessageTypeOut.NEW_JOB.toString() + "," + nextJob.getName() + "," + nextJob.getDuration(), freestNode.getAddr(), freestNode.getPort());
-                    System.out.println("");
+                // A splittable job is split into as many chunks as can start straight away, each run on its own slot
+                int chunkCount = (nextJob.getSplit() > 1) ? Math.min(Math.min(nextJob.getSplit(), nextJob.getDuration()), nodeManager.getFreeChunkCount(nextJob)) : 1;
+
+                if (chunkCount > 1) {
+                    System.out.println("===============================================================================");
+                    System.out.println("[INFO] Splitting job '" + nextJob.getName() + "' into " + chunkCount + " chunks...\n");
 
-                    System.out.println("[INFO] Node '" + freestNode.getName() + "' utilization is now " + String.format("%.2f", freestNode.calcUsage()) + "% (max capacity is " + freestNode.getCapacity() + ")");
+                    for (Job chunk : jobManager.splitJob(nextJob, chunkCount)) {
+                        dispatchJob(chunk);
+                    }
+                } else {
+                    dispatchJob(nextJob);
                 }
+            } else if (System.currentTimeMillis() - lastStealCheck >= STEAL_CHECK_INTERVAL) {
+                // No jobs are waiting to be allocated, so periodically let an idle node steal a queued job from a backed up node
+                lastStealCheck = System.currentTimeMillis();
+
+                stealJob();
+            }
+
+            // Periodically reject waiting jobs which can no longer meet their deadline, rather than running them late
+            if (System.currentTimeMillis() - lastDeadlineCheck >= DEADLINE_CHECK_INTERVAL) {
+                lastDeadlineCheck = System.currentTimeMillis();
+
+                rejectUnmeetableJobs();
+            }
+
+            // Periodically check for straggling jobs (if enabled)
+            if (stragglerFactor > 0 && System.currentTimeMillis() - lastStragglerCheck >= STRAGGLER_CHECK_INTERVAL) {
+                lastStragglerCheck = System.currentTimeMillis();
+
+                speculateStragglers();
             }
         }
     }
 
+    /**
+     * Reserve the earliest time at which a job at the head of the queue is predicted to be able to start, and backfill
+     * a later job which can start straight away and is predicted to complete before then, or only uses resources the
+     * reserved job won't need, so the free slots are used without delaying the reserved job
+     *
+     * @param job The job which can't start yet
+     */
+    private void reserveJob(Job job) {
+        // A reservation is only recalculated when a new job is reserved, or periodically as the running jobs progress
+        if (reservedJob == job && System.currentTimeMillis() - lastBackfillCheck < BACKFILL_CHECK_INTERVAL) {
+            return;
+        }
+
+        lastBackfillCheck = System.currentTimeMillis();
+
+        int copies = Math.max(1, job.getGang());
+        long reservationTime = nodeManager.calcReservationTime(job, copies);
+
+        if (reservedJob != job) {
+            reservedJob = job;
+
+            System.out.println("===============================================================================");
+            System.out.println("[INFO] Job '" + job.getName() + "' can't start yet, reserving " + (reservationTime != Long.MAX_VALUE ? String.format("%tT", reservationTime) : "the next time enough resources are free") + " for it and backfilling shorter jobs\n");
+        }
+
+        // Backfill as many jobs as fit, recalculating the reservation after each as the backfilled job may change it
+        while (true) {
+            // Copies which could start at the reservation time beyond those the reserved job needs can be held by longer jobs
+            int spareCopies = (reservationTime != Long.MAX_VALUE) ? nodeManager.countCopiesAt(job, reservationTime) - copies : 0;
+
+            Job backfillJob = jobManager.getBackfillJob(job, reservationTime, spareCopies);
+
+            if (backfillJob == null) {
+                return;
+            }
+
+            System.out.println("===============================================================================");
+            System.out.println("[INFO] Backfilling job '" + backfillJob.getName() + "' ahead of reserved job '" + job.getName() + "'...\n");
+
+            dispatchJob(backfillJob, nodeManager.getFreeNode(backfillJob));
+
+            reservationTime = nodeManager.calcReservationTime(job, copies);
+        }
+    }
+
+    /**
+     * Allocate a job to the freest node, based on the allocation method, and send the job to the node
+     *
+     * @param job The job to allocate
+     */
+    private void dispatchJob(Job job) {
+        dispatchJob(job, nodeManager.getFreestNode(job));
+    }
+
+    /**
+     * Allocate a job to the supplied node and send the job to the node
+     *
+     * @param job        The job to allocate
+     * @param freestNode The node to allocate the job to, nothing is allocated if null
+     */
+    private void dispatchJob(Job job, Node freestNode) {
+        if (freestNode != null) {
+            System.out.println("===============================================================================");
+            System.out.println("[INFO] Allocating job '" + job.getName() + "'...\n");
+            System.out.println("[INFO] Current nodes:\n" + nodeManager.toString() + "\n");
+            System.out.println("[INFO] Previous job list:\n" + jobManager.toString() + "\n");
+
+            jobManager.allocateJob(job, freestNode);
+            System.out.println("[INFO] Current job list:\n" + jobManager.toString() + "\n");
+
+            messageManager.send(MessageTypeOut.NEW_JOB.toString() + "," + job.toMessageArgs(), freestNode.getAddr(), freestNode.getPort());
+            System.out.println("");
+
+            System.out.println("[INFO] Node '" + freestNode.getName() + "' utilization is now " + String.format("%.2f", freestNode.calcUsage()) + "% (max capacity is " + freestNode.getCapacity() + ")");
+        }
+    }
+
+    /**
+     * Launch a speculative copy of any job that has been running for longer than its duration multiplied by the
+     * straggler factor on another node. Whichever copy completes first is accepted and the other is cancelled
+     */
+    private void speculateStragglers() {
+        for (Job straggler : jobManager.getStragglers(stragglerFactor)) {
+            Node stragglerNode = jobManager.getJobNode(straggler.getName());
+            Node speculativeNode = nodeManager.getSpeculativeNode(straggler, stragglerNode);
+
+            if (speculativeNode != null) {
+                System.out.println("===============================================================================");
+                System.out.println("[INFO] Job '" + straggler.getName() + "' has exceeded " + stragglerFactor + "x its duration of " + straggler.getDuration() + " on node '" + stragglerNode.getName() + "', launching a speculative copy...\n");
+
+                jobManager.setSpeculativeNode(straggler, speculativeNode);
+
+                messageManager.send(MessageTypeOut.NEW_JOB.toString() + "," + straggler.toMessageArgs(), speculativeNode.getAddr(), speculativeNode.getPort());
+                System.out.println("");
+
+                System.out.println("[INFO] Speculative copy of job '" + straggler.getName() + "' allocated to node '" + speculativeNode.getName() + "'");
+            }
+        }
+    }
+
+    /**
+     * Reject any unallocated job which is predicted to complete after its deadline even if it were allocated to the
+     * fastest eligible node now, freeing the capacity it would have used for jobs which can still complete in time
+     */
+    private void rejectUnmeetableJobs() {
+        for (Job unmeetableJob : jobManager.getUnmeetableJobs()) {
+            System.out.println("===============================================================================");
+            System.out.println("[INFO] Job '" + unmeetableJob.getName() + "' can no longer complete before its deadline, rejecting...\n");
+
+            jobManager.rejectJob(unmeetableJob);
+            notifyJobOutcome(unmeetableJob, MessageTypeOut.REJECT_JOB, ",deadline cannot be met");
+
+            promoteCoalescedJob(unmeetableJob);
+            cancelDescendants(unmeetableJob);
+
+            System.out.println("[INFO] Job '" + unmeetableJob.getName() + "' rejected\n");
+            System.out.println("[INFO] Current job list:\n" + jobManager.toString());
+        }
+    }
+
+    /**
+     * If a node has a free slot while another node has jobs waiting in its local queue, ask the backed up node to
+     * give up one of its queued jobs so that it can be reallocated to the idle node
+     */
+    private void stealJob() {
+        Node idleNode = nodeManager.getIdleNode();
+
+        if (idleNode == null) {
+            return;
+        }
+
+        Node backloggedNode = nodeManager.getMostBackloggedNode();
+
+        if (backloggedNode == null || backloggedNode.equals(idleNode)) {
+            return;
+        }
+
+        // Only steal a job the idle node has the resources to start straight away
+        Job stealableJob = jobManager.getStealableJob(backloggedNode, idleNode);
+
+        if (stealableJob == null) {
+            return;
+        }
+
+        System.out.println("===============================================================================");
+        System.out.println("[INFO] Node '" + idleNode.getName() + "' is idle while node '" + backloggedNode.getName() + "' has " + backloggedNode.getQueuedJobs() + " queued job(s), requesting job '" + stealableJob.getName() + "' to steal...\n");
+
+        nodeManager.beginSteal(idleNode, backloggedNode);
+        messageManager.send(MessageTypeOut.STEAL_JOB_REQUEST.toString() + "," + idleNode.getName() + "," + stealableJob.getName(), backloggedNode.getAddr(), backloggedNode.getPort());
+    }
+
     /**
      * Take in a message a string, analyse it and perform the appropriate action based on the contents
      *
@@ -180,7 +490,8 @@ public class LoadBalancer {
      * @throws IOException When InetAddress cannot be resolved from the supplied IP address
      */
     private void processMessage(String message) throws IOException {
-        String[] args = message.split(",");
+        // A node data dump is relayed to the initiator as it is, so only its header is split from the payload
+        String[] args = message.startsWith(MessageTypeIn.DATA_DUMP_NODE.toString() + ",") ? message.split(",", I_DATA_DUMP_NODE_PAYLOAD + 1) : message.split(",");
 
         // Nice formatting
         System.out.println("===============================================================================");
@@ -193,6 +504,9 @@ public class LoadBalancer {
                 System.out.println("[INFO] Sending shutdown message to nodes...\n");
                 nodeManager.shutdownAllNodes();
 
+                // Give the messages just sent a moment to be acknowledged before exiting
+                messageManager.flush(1000);
+
                 System.out.println("[INFO] Shutting down...");
                 System.exit(0);
 
@@ -261,13 +575,46 @@ public class LoadBalancer {
                 int nodePort = getValidIntArg(args, I_NODE_PORT);
                 String nodeName = getValidStringArg(args, I_NODE_NAME);
                 int nodeCap = getValidIntArg(args, I_NODE_CAP);
+                double nodeScore = getValidDoubleArg(args, I_NODE_SCORE);
+
+                // Nodes that don't advertise their memory or scratch disk are not limited by it
+                int nodeMemory = 0;
+                int nodeDisk = 0;
+                LinkedHashSet<String> nodeLabels = new LinkedHashSet<>();
+                boolean validResources = true;
+
+                for (int i = I_NODE_RESOURCES; i < args.length; i++) {
+                    String[] resource = args[i].split("=", 2);
+
+                    if (resource.length != 2) {
+                        validResources = false;
+                    } else if (resource[0].trim().equalsIgnoreCase("labels")) {
+                        for (String label : resource[1].split("\\+")) {
+                            label = label.trim().toLowerCase();
+
+                            if (!label.isEmpty() && !LabelSelector.isValidLabel(label)) {
+                                validResources = false;
+                            } else if (!label.isEmpty()) {
+                                nodeLabels.add(label);
+                            }
+                        }
+                    } else if (getValidIntArg(resource, 1) < 0) {
+                        validResources = false;
+                    } else if (resource[0].trim().equalsIgnoreCase("memory")) {
+                        nodeMemory = getValidIntArg(resource, 1);
+                    } else if (resource[0].trim().equalsIgnoreCase("disk")) {
+                        nodeDisk = getValidIntArg(resource, 1);
+                    }
+                }
 
-                if (nodeIP == null || nodePort == -1 || nodeName == null || nodeCap == -1) {
+                if (nodeIP == null || nodePort == -1 || nodeName == null || nodeCap <= 0 || !validResources) {
                     System.out.println("[ERROR] Node was not added, some of the supplied information was invalid");
                 } else {
                     InetAddress nodeAddr = InetAddress.getByName(nodeIP);
 
-                    Node newNode = new Node(nodePort, nodeAddr, nodeCap, nodeName);
+                    // Nodes that didn't run the benchmark are treated as the reference machine
+                    Node newNode = new Node(nodePort, nodeAddr, nodeCap, nodeName, nodeScore > 0 ? nodeScore : 1.0, nodeMemory, nodeDisk);
+                    newNode.setLabels(nodeLabels);
                     boolean hasNodeAdded = nodeManager.addNode(newNode);
 
                     if (!hasNodeAdded) {
@@ -291,22 +638,95 @@ public class LoadBalancer {
                 String jobName = getValidStringArg(args, I_JOB_NAME);
                 int jobDuration = getValidIntArg(args, I_JOB_DURATION);
 
-                if (jobName == null || jobDuration == -1) {
+                Job newJob = (jobName == null || jobDuration == -1) ? null : new Job(jobName, jobDuration);
+                Job existingJob = (jobName == null) ? null : jobManager.getByName(jobName);
+                JobStatus existingJobStatus = (existingJob == null) ? null : jobManager.getJobStatus(existingJob);
+
+                if (existingJob != null && existingJobStatus != JobStatus.SENT && existingJobStatus != JobStatus.CANCELLED && existingJobStatus != JobStatus.REJECTED) {
+                    // A job with the same name is still in progress, so the name can't be reused until it finishes
+                    System.out.println("[INFO] Job '" + existingJob.getName() + "' is still in progress, ignoring the job reusing its name");
+                } else if (newJob == null || !setJobAttributes(newJob, args, I_JOB_ATTRIBUTES)) {
                     System.out.println("[ERROR] Job was not added, some of the supplied information was invalid");
-                } else {
-                    Job newJob = new Job(jobName, jobDuration);
+                } else if (resultCacheManager.isCacheable(newJob) && resultCacheManager.isCached(newJob)) {
+                    // Identical work has completed recently, so the job is answered without being run
+                    jobManager.addJob(newJob);
 
+                    jobManager.updateJobStatus(newJob, JobStatus.SENT);
+                    jobManager.recordDeadline(newJob);
+                    notifyJobOutcome(newJob, MessageTypeOut.COMPLETE_JOB, "");
+
+                    System.out.println("[INFO] Job '" + newJob.getName() + "' answered from the result cache and sent to the initiator\n");
+                    System.out.println("[INFO] Current job list:\n" + jobManager.toString());
+                } else {
                     jobManager.addJob(newJob);
 
-                    System.out.println("[INFO] New job added: " + newJob.toString() + "\n");
+                    // Identical work already in flight is only run once, the new job completes along with it
+                    Job inFlightJob = resultCacheManager.isCacheable(newJob) ? resultCacheManager.coalesce(newJob) : null;
+
+                    if (jobManager.hasFailedParent(newJob)) {
+                        // A parent of the job has been cancelled or rejected, so the job can never run
+                        jobManager.updateJobStatus(newJob, JobStatus.CANCELLED);
+                        notifyJobOutcome(newJob, MessageTypeOut.CANCEL_JOB_CONFIRM, "");
+
+                        System.out.println("[INFO] New job '" + newJob.getName() + "' cancelled as one of its parents will never complete\n");
+                    } else if (inFlightJob != null) {
+                        jobManager.updateJobStatus(newJob, JobStatus.COALESCED);
+
+                        System.out.println("[INFO] New job added: " + newJob.toString() + ", coalesced with in flight job '" + inFlightJob.getName() + "'\n");
+                    } else {
+                        System.out.println("[INFO] New job added: " + newJob.toString() + (jobManager.getJobStatus(newJob) == JobStatus.WAITING ? ", waiting for its parents to complete" : "") + "\n");
+                    }
+
                     System.out.println("[INFO] Current job list:\n" + jobManager.toString());
                 }
 
+                break;
+            case NEW_JOB_GROUP:
+                System.out.println("[INFO] Received '" + message + "', processing...\n");
+
+                String groupName = getValidStringArg(args, I_GROUP_NAME);
+                int groupSize = getValidIntArg(args, I_GROUP_SIZE);
+                int groupJobDuration = getValidIntArg(args, I_GROUP_DURATION);
+
+                if (groupName == null || groupName.isEmpty() || groupSize < 1 || groupJobDuration == -1 || jobManager.getGroup(groupName) != null || jobManager.getByName(groupName) != null) {
+                    System.out.println("[ERROR] Job group was not added, some of the supplied information was invalid");
+                } else {
+                    JobGroup newGroup = new JobGroup(groupName, groupSize);
+                    ArrayList<Job> groupJobs = new ArrayList<>();
+
+                    // Every job in the group shares the same duration and attributes, the group is only added if they are valid
+                    for (int i = 1; i <= groupSize; i++) {
+                        Job groupJob = new Job(newGroup.getJobName(i), groupJobDuration);
+
+                        if (jobManager.getByName(groupJob.getName()) != null || !setJobAttributes(groupJob, args, I_GROUP_ATTRIBUTES)) {
+                            groupJobs = null;
+
+                            break;
+                        }
+
+                        groupJob.setGroup(newGroup);
+                        groupJobs.add(groupJob);
+                    }
+
+                    if (groupJobs == null) {
+                        System.out.println("[ERROR] Job group was not added, some of the supplied information was invalid");
+                    } else {
+                        jobManager.addGroup(newGroup);
+
+                        for (Job groupJob : groupJobs) {
+                            jobManager.addJob(groupJob);
+                        }
+
+                        System.out.println("[INFO] New job group added: " + newGroup.toString() + "\n");
+                    }
+                }
+
                 break;
             case COMPLETE_JOB:
                 System.out.println("[INFO] Received '" + message + "', processing...\n");
 
                 String completedJobName = getValidStringArg(args, I_COMPLETE_JOB_NAME);
+                String completedJobNodeName = getValidStringArg(args, I_COMPLETE_JOB_NODE_NAME);
 
                 if (completedJobName == null) {
                     System.out.println("[ERROR] Job was not altered, some of the supplied information was invalid");
@@ -315,17 +735,49 @@ public class LoadBalancer {
 
                     if (completedJob == null) {
                         System.out.println("[ERROR] Job was not marked as complete or sent to the initiator as no job with name '" + completedJobName + "' was found");
+                    } else if (jobManager.getJobStatus(completedJob) == JobStatus.SENT) {
+                        // The losing copy of a speculatively executed job finished before its cancel request arrived
+                        System.out.println("[INFO] Job '" + completedJob.getName() + "' has already been sent to the initiator, ignoring the completion from node '" + completedJobNodeName + "'");
+
+                        if (completedJobNodeName != null) {
+                            nodeManager.resetIsAliveTimer(completedJobNodeName);
+                        }
                     } else {
-                        Node completedJobNode = jobManager.getJobNode(completedJobName);
+                        // Older nodes don't identify themselves, in which case the completion is from the allocated node
+                        Node completedJobNode = (completedJobNodeName != null && nodeManager.getByName(completedJobNodeName) != null) ? nodeManager.getByName(completedJobNodeName) : jobManager.getJobNode(completedJobName);
+                        Node losingJobNode = jobManager.resolveSpeculation(completedJob, completedJobNode);
+
                         System.out.println("[INFO] Previous job information for job '" + completedJob.getName() + "':\n" + jobManager.jobToString(completedJobName) + "\n");
                         System.out.println("[INFO] Previous node information for node '" + completedJobNode.getName() + "':\n" + completedJobNode.toString() + "\n");
 
-                        messageManager.send(MessageTypeOut.COMPLETE_JOB.toString() + "," + completedJobName, initiatorAddr, initiatorPort);
-                        System.out.println("");
+                        // Update the speed estimate of the node, measuring the runtime here if the node didn't report it
+                        long completedJobRuntime = getValidIntArg(args, I_COMPLETE_JOB_RUNTIME);
+                        long completedJobStartTime = jobManager.getJobStartTime(completedJob);
+
+                        if (completedJobRuntime == -1 && completedJobStartTime != 0) {
+                            completedJobRuntime = System.currentTimeMillis() - completedJobStartTime;
+                        }
 
-                        jobManager.updateJobStatus(completedJob, JobStatus.SENT);
+                        // Compare against the duration predicted before this completion is learnt from
+                        double expectedJobDuration = durationManager.getPredictedDuration(completedJob, 0.5);
+                        durationManager.recordCompletion(completedJob, completedJobRuntime, completedJobNode.getSpeedFactor());
 
-                        System.out.println("[INFO] Job '" + completedJob.getName() + "' is complete and sent to the initiator\n");
+                        completedJobNode.recordCompletion(expectedJobDuration, completedJobRuntime);
+                        System.out.println("[INFO] Node speed estimate updated: " + completedJobNode.speedToString() + "\n");
+
+                        completeJob(completedJob);
+                        jobManager.startQueuedJobs(completedJobNode);
+
+                        if (losingJobNode != null) {
+                            messageManager.send(MessageTypeOut.CANCEL_JOB_REQUEST.toString() + "," + completedJobName, losingJobNode.getAddr(), losingJobNode.getPort());
+                            System.out.println("");
+
+                            jobManager.startQueuedJobs(losingJobNode);
+
+                            System.out.println("[INFO] Node '" + completedJobNode.getName() + "' completed job '" + completedJob.getName() + "' first, the copy on node '" + losingJobNode.getName() + "' has been cancelled\n");
+                        }
+
+                        System.out.println("[INFO] Job '" + completedJob.getName() + "' is complete\n");
                         System.out.println("[INFO] Current job list:\n" + jobManager.toString() + "\n");
                         System.out.println("[INFO] Current nodes:\n" + nodeManager.toString());
 
@@ -345,38 +797,27 @@ public class LoadBalancer {
                 } else {
                     Job cancelJob = jobManager.getByName(cancelJobName);
 
-                    if (cancelJob == null) {
-                        System.out.println("[ERROR] Job cancel request was not issued as no job with name '" + cancelJobName + "' was found");
-                    } else {
-                        JobStatus jobStatus = jobManager.getJobStatus(cancelJob);
-
-                        if (jobStatus == JobStatus.ALLOCATED) {
-                            Node jobNode = jobManager.getJobNode(cancelJob.getName());
-
-                            if (jobNode == null) {
-                                System.out.println("[ERROR] The node allocated to the job could not be found");
-                            } else {
-                                System.out.println("[INFO] Previous job information for job '" + cancelJob.getName() + "':\n" + jobManager.jobToString(cancelJobName) + "\n");
+                    JobGroup cancelGroup = jobManager.getGroup(cancelJobName);
 
-                                messageManager.send(MessageTypeOut.CANCEL_JOB_REQUEST.toString() + "," + cancelJobName, jobNode.getAddr(), jobNode.getPort());
-                                System.out.println("");
+                    if (cancelJob != null) {
+                        cancelJob(cancelJob);
 
-                                jobManager.updateJobStatus(cancelJob, JobStatus.REQUESTED_CANCEL);
-
-                                System.out.println("[INFO] Job '" + cancelJob.getName() + "' has been requested to be cancelled\n");
-                                System.out.println("[INFO] Current job list:\n" + jobManager.toString());
+                        System.out.println("[INFO] Current job list:\n" + jobManager.toString());
+                    } else if (cancelGroup != null) {
+                        // Cancel every job in the group that hasn't already finished or been requested to cancel
+                        for (int i = 1; i <= cancelGroup.getSize(); i++) {
+                            Job groupJob = jobManager.getByName(cancelGroup.getJobName(i));
+                            JobStatus groupJobStatus = jobManager.getJobStatus(groupJob);
+
+                            if (groupJobStatus != JobStatus.SENT && groupJobStatus != JobStatus.CANCELLED && groupJobStatus != JobStatus.REJECTED && groupJobStatus != JobStatus.REQUESTED_CANCEL) {
+                                cancelJob(groupJob);
                             }
-                        } else {
-                            System.out.println("[INFO] Previous job information for job '" + cancelJob.getName() + "':\n" + jobManager.jobToString(cancelJobName) + "\n");
-
-                            messageManager.send(MessageTypeOut.CANCEL_JOB_CONFIRM.toString() + "," + cancelJobName, initiatorAddr, initiatorPort);
-                            System.out.println("");
-
-                            jobManager.updateJobStatus(cancelJob, JobStatus.CANCELLED);
-
-                            System.out.println("[INFO] Job '" + cancelJob.getName() + "' cancelled\n");
-                            System.out.println("[INFO] Current job list:\n" + jobManager.toString());
                         }
+
+                        System.out.println("[INFO] Job group '" + cancelGroup.getName() + "' has been requested to be cancelled\n");
+                        System.out.println("[INFO] Current job list:\n" + jobManager.toString());
+                    } else {
+                        System.out.println("[ERROR] Job cancel request was not issued as no job with name '" + cancelJobName + "' was found");
                     }
                 }
 
@@ -385,6 +826,7 @@ public class LoadBalancer {
                 System.out.println("[INFO] Received '" + message + "', processing...\n");
 
                 String cancelledJobName = getValidStringArg(args, I_CANCELLED_JOB_NAME);
+                String cancelledJobNodeName = getValidStringArg(args, I_CANCELLED_JOB_NODE_NAME);
 
                 if (cancelledJobName == null) {
                     System.out.println("[ERROR] Job was not altered, some of the supplied information was invalid");
@@ -394,17 +836,35 @@ public class LoadBalancer {
                     if (cancelledJob == null) {
                         System.out.println("[ERROR] Job was not marked as cancelled or sent to the initiator as no job with name '" + cancelledJobName + "' was found");
                     } else {
-                        System.out.println("[INFO] Previous job information for job '" + cancelledJob.getName() + "':\n" + jobManager.jobToString(cancelledJobName) + "\n");
+                        // Older nodes don't identify themselves, in which case the confirmation is from the allocated node
+                        if (cancelledJobNodeName == null) {
+                            cancelledJobNodeName = jobManager.getJobNode(cancelledJobName).getName();
+                        }
 
-                        messageManager.send(MessageTypeOut.CANCEL_JOB_CONFIRM.toString() + "," + cancelledJobName, initiatorAddr, initiatorPort);
-                        System.out.println("");
+                        JobStatus cancelledJobStatus = jobManager.getJobStatus(cancelledJob);
 
-                        jobManager.updateJobStatus(cancelledJob, JobStatus.CANCELLED);
+                        if (cancelledJobStatus == JobStatus.SENT || cancelledJobStatus == JobStatus.CANCELLED) {
+                            // Either the losing copy of a speculatively executed job, or the second copy of a cancelled job
+                            System.out.println("[INFO] Copy of job '" + cancelledJob.getName() + "' on node '" + cancelledJobNodeName + "' cancelled, the initiator has already been notified of the job's outcome");
+                        } else {
+                            System.out.println("[INFO] Previous job information for job '" + cancelledJob.getName() + "':\n" + jobManager.jobToString(cancelledJobName) + "\n");
 
-                        System.out.println("[INFO] Job '" + cancelledJob.getName() + "' cancelled\n");
-                        System.out.println("[INFO] Current job list:\n" + jobManager.toString());
+                            jobManager.updateJobStatus(cancelledJob, JobStatus.CANCELLED);
+                            notifyJobOutcome(cancelledJob, MessageTypeOut.CANCEL_JOB_CONFIRM, "");
+                            promoteCoalescedJob(cancelledJob);
+                            cancelDescendants(cancelledJob);
+
+                            System.out.println("[INFO] Job '" + cancelledJob.getName() + "' cancelled\n");
+                            System.out.println("[INFO] Current job list:\n" + jobManager.toString());
+                        }
+
+                        // Cancelling the job either frees its slots or removes it from the front of the node's local queue
+                        Node cancelledJobNode = nodeManager.getByName(cancelledJobNodeName);
+
+                        if (cancelledJobNode != null && cancelledJobStatus == JobStatus.REQUESTED_CANCEL) {
+                            jobManager.startQueuedJobs(cancelledJobNode);
+                        }
 
-                        String cancelledJobNodeName = jobManager.getJobNode(cancelledJobName).getName();
                         nodeManager.resetIsAliveTimer(cancelledJobNodeName);
                         System.out.println("\n[INFO] Is alive timer reset for node '" + cancelledJobNodeName + "'");
                     }
@@ -417,6 +877,13 @@ public class LoadBalancer {
                 String lbDataDump = ("\n" +
                         "[INFO] Current client:\n" + "Address: ") + initiatorAddr + ", Port: " + initiatorPort + "\n\n" +
                         "[INFO] Current nodes:\n" + nodeManager.toString() + "\n\n" +
+                        "[INFO] Node speed estimates:\n" + nodeManager.speedsToString() + "\n\n" +
+                        "[INFO] Job duration predictions:\n" + durationManager.toString() + "\n\n" +
+                        "[INFO] User resource shares:\n" + jobManager.sharesToString() + "\n\n" +
+                        "[INFO] Result cache:\n" + resultCacheManager.toString() + "\n\n" +
+                        "[INFO] Deadlines:\n" + jobManager.deadlinesToString() + "\n\n" +
+                        "[INFO] Job groups:\n" + jobManager.groupsToString() + "\n\n" +
+                        "[INFO] Messages:\n" + messageManager.toString() + "\n\n" +
                         "[INFO] Current job list:\n" + jobManager.toString();
 
                 messageManager.send(MessageTypeOut.DATA_DUMP_LOAD_BALANCER.toString() + "," + lbDataDump, initiatorAddr, initiatorPort);
@@ -459,7 +926,7 @@ public class LoadBalancer {
                 // in this context as it will need to be displayed separately
 
                 String dataDumpNodeName = getValidStringArg(args, I_DATA_DUMP_NODE_NAME);
-                String specificNodeDataDump = String.join(",", Arrays.copyOfRange(args, 2, args.length));
+                String specificNodeDataDump = (args.length > I_DATA_DUMP_NODE_PAYLOAD) ? args[I_DATA_DUMP_NODE_PAYLOAD] : "";
 
                 if (dataDumpNodeName == null) {
                     System.out.println("[ERROR] Node data dump not accepted, some of the supplied information was invalid");
@@ -517,6 +984,90 @@ public class LoadBalancer {
                     }
                 }
 
+                break;
+            case STEAL_JOB_CONFIRM:
+                System.out.println("[INFO] Received '" + message + "', processing...\n");
+
+                String stealVictimName = getValidStringArg(args, I_STEAL_VICTIM_NAME);
+                String stolenJobName = getValidStringArg(args, I_STEAL_JOB_NAME);
+                String stealThiefName = getValidStringArg(args, I_STEAL_THIEF_NAME);
+
+                if (stealVictimName == null || stolenJobName == null || stealThiefName == null) {
+                    System.out.println("[ERROR] Job was not reallocated, some of the supplied information was invalid");
+                } else {
+                    Node stealVictim = nodeManager.getByName(stealVictimName);
+                    Node stealThief = nodeManager.getByName(stealThiefName);
+                    Job stolenJob = jobManager.getByName(stolenJobName);
+
+                    nodeManager.endSteal(stealThief, stealVictim);
+
+                    if (stealVictim == null || stolenJob == null) {
+                        System.out.println("[ERROR] Job was not reallocated as the job '" + stolenJobName + "' or node '" + stealVictimName + "' could not be found");
+                    } else {
+                        System.out.println("[INFO] Previous job information for job '" + stolenJob.getName() + "':\n" + jobManager.jobToString(stolenJobName) + "\n");
+
+                        if (stealThief != null && stealThief.isLargeEnough(stolenJob) && stealThief.matchesSelector(stolenJob) && jobManager.reallocateJob(stolenJob, stealVictim, stealThief)) {
+                            messageManager.send(MessageTypeOut.NEW_JOB.toString() + "," + stolenJob.toMessageArgs(), stealThief.getAddr(), stealThief.getPort());
+                            System.out.println("");
+
+                            System.out.println("[INFO] Job '" + stolenJob.getName() + "' has been stolen from node '" + stealVictimName + "' by node '" + stealThiefName + "'\n");
+                        } else {
+                            // The idle node has since been removed, is too small or not eligible for the job, or the job has moved on, so let the job be allocated as normal
+                            jobManager.deallocateJob(stolenJob);
+                        }
+
+                        System.out.println("[INFO] Current job list:\n" + jobManager.toString());
+
+                        nodeManager.resetIsAliveTimer(stealVictimName);
+                        System.out.println("\n[INFO] Is alive timer reset for node '" + stealVictimName + "'");
+                    }
+                }
+
+                break;
+            case STEAL_JOB_FAILURE:
+                System.out.println("[INFO] Received '" + message + "', processing...\n");
+
+                String failedStealVictimName = getValidStringArg(args, I_STEAL_FAILURE_VICTIM_NAME);
+                String failedStealThiefName = getValidStringArg(args, I_STEAL_FAILURE_THIEF_NAME);
+
+                if (failedStealVictimName == null || failedStealThiefName == null) {
+                    System.out.println("[ERROR] Some of the supplied information was invalid");
+                } else {
+                    nodeManager.endSteal(nodeManager.getByName(failedStealThiefName), nodeManager.getByName(failedStealVictimName));
+
+                    System.out.println("[INFO] Node '" + failedStealVictimName + "' had no queued jobs left for node '" + failedStealThiefName + "' to steal");
+
+                    nodeManager.resetIsAliveTimer(failedStealVictimName);
+                    System.out.println("[INFO] Is alive timer reset for node '" + failedStealVictimName + "'");
+                }
+
+                break;
+            case CAPACITY_UPDATE:
+                System.out.println("[INFO] Received '" + message + "', processing...\n");
+
+                String capacityNodeName = getValidStringArg(args, I_CAPACITY_UPDATE_NODE_NAME);
+                int newCapacity = getValidIntArg(args, I_CAPACITY_UPDATE_CAPACITY);
+
+                if (capacityNodeName == null || newCapacity <= 0) {
+                    System.out.println("[ERROR] Node capacity was not updated, some of the supplied information was invalid");
+                } else {
+                    Node capacityNode = nodeManager.getByName(capacityNodeName);
+
+                    if (capacityNode == null) {
+                        System.out.println("[ERROR] Node capacity could not be updated as no node with name '" + capacityNodeName + "' was found\n");
+                    } else {
+                        int oldCapacity = capacityNode.getCapacity();
+
+                        nodeManager.updateNodeCapacity(capacityNode, newCapacity);
+
+                        System.out.println("[INFO] Capacity of node '" + capacityNodeName + "' updated from " + oldCapacity + " to " + newCapacity + "\n");
+                        System.out.println("[INFO] Current nodes:\n" + nodeManager.toString());
+
+                        nodeManager.resetIsAliveTimer(capacityNodeName);
+                        System.out.println("\n[INFO] Is alive timer reset for node '" + capacityNodeName + "'");
+                    }
+                }
+
                 break;
             case UNKNOWN:
             default:
@@ -561,6 +1112,9 @@ public class LoadBalancer {
 
             nodeManager.shutdownAllNodes();
 
+            // Give the messages just sent a moment to be acknowledged before exiting
+            messageManager.flush(1000);
+
             System.out.println("[INFO] Shutting down...");
             System.exit(0);
         } else {
@@ -593,6 +1147,356 @@ public class LoadBalancer {
         return userInput;
     }
 
+    /**
+     * Cancel a job, requesting the node it is allocated to cancel it if it has been allocated, otherwise cancelling it
+     * straight away
+     *
+     * @param cancelJob The job to cancel
+     */
+    private void cancelJob(Job cancelJob) {
+        JobStatus jobStatus = jobManager.getJobStatus(cancelJob);
+
+        if (jobStatus == JobStatus.SPLIT) {
+            System.out.println("[INFO] Previous job information for job '" + cancelJob.getName() + "':\n" + jobManager.jobToString(cancelJob.getName()) + "\n");
+
+            // The job is cancelled along with the first of its chunks to be cancelled
+            jobManager.updateJobStatus(cancelJob, JobStatus.REQUESTED_CANCEL);
+            cancelChunks(cancelJob);
+
+            System.out.println("[INFO] Job '" + cancelJob.getName() + "' has been requested to be cancelled\n");
+        } else if (jobStatus == JobStatus.ALLOCATED) {
+            Node jobNode = jobManager.getJobNode(cancelJob.getName());
+
+            if (jobNode == null) {
+                System.out.println("[ERROR] The node allocated to the job could not be found");
+            } else {
+                System.out.println("[INFO] Previous job information for job '" + cancelJob.getName() + "':\n" + jobManager.jobToString(cancelJob.getName()) + "\n");
+
+                messageManager.send(MessageTypeOut.CANCEL_JOB_REQUEST.toString() + "," + cancelJob.getName(), jobNode.getAddr(), jobNode.getPort());
+                System.out.println("");
+
+                // A speculative copy of the job also needs cancelling
+                Node speculativeJobNode = jobManager.getSpeculativeNode(cancelJob);
+
+                if (speculativeJobNode != null) {
+                    messageManager.send(MessageTypeOut.CANCEL_JOB_REQUEST.toString() + "," + cancelJob.getName(), speculativeJobNode.getAddr(), speculativeJobNode.getPort());
+                    System.out.println("");
+                }
+
+                jobManager.updateJobStatus(cancelJob, JobStatus.REQUESTED_CANCEL);
+
+                System.out.println("[INFO] Job '" + cancelJob.getName() + "' has been requested to be cancelled\n");
+            }
+        } else {
+            System.out.println("[INFO] Previous job information for job '" + cancelJob.getName() + "':\n" + jobManager.jobToString(cancelJob.getName()) + "\n");
+
+            jobManager.updateJobStatus(cancelJob, JobStatus.CANCELLED);
+            notifyJobOutcome(cancelJob, MessageTypeOut.CANCEL_JOB_CONFIRM, "");
+            promoteCoalescedJob(cancelJob);
+            cancelDescendants(cancelJob);
+
+            System.out.println("[INFO] Job '" + cancelJob.getName() + "' cancelled\n");
+        }
+    }
+
+    /**
+     * Mark a job as complete and notify the initiator. A chunk of a split job instead completes the split job once
+     * every one of its chunks has completed
+     *
+     * @param job The job that has completed
+     */
+    private void completeJob(Job job) {
+        jobManager.updateJobStatus(job, JobStatus.SENT);
+
+        if (job.getSplitFrom() != null) {
+            if (jobManager.isSplitJobComplete(job.getSplitFrom())) {
+                System.out.println("[INFO] Every chunk of split job '" + job.getSplitFrom().getName() + "' is complete\n");
+
+                completeJob(job.getSplitFrom());
+            }
+
+            return;
+        }
+
+        jobManager.recordDeadline(job);
+        notifyJobOutcome(job, MessageTypeOut.COMPLETE_JOB, "");
+
+        // Complete any identical jobs that were coalesced with the job, and remember the result
+        if (resultCacheManager.isCacheable(job)) {
+            for (Job coalescedJob : resultCacheManager.complete(job)) {
+                System.out.println("[INFO] Coalesced job '" + coalescedJob.getName() + "' is complete\n");
+
+                completeJob(coalescedJob);
+            }
+        }
+
+        releaseDependants(job);
+    }
+
+    /**
+     * Cancel or reject a split job when one of its chunks has been cancelled or rejected, as the job can no longer
+     * complete, cancelling the rest of its chunks
+     *
+     * @param splitJob  The split job
+     * @param outcome   The message type of the outcome of the chunk, CANCEL_JOB_CONFIRM or REJECT_JOB
+     * @param arguments Any further arguments of the message following the job name, each preceded by a comma
+     */
+    private void failSplitJob(Job splitJob, MessageTypeOut outcome, String arguments) {
+        JobStatus splitJobStatus = jobManager.getJobStatus(splitJob);
+
+        // Only the first of the chunks to fail affects the split job
+        if (splitJobStatus != JobStatus.SPLIT && splitJobStatus != JobStatus.REQUESTED_CANCEL) {
+            return;
+        }
+
+        jobManager.updateJobStatus(splitJob, outcome == MessageTypeOut.REJECT_JOB ? JobStatus.REJECTED : JobStatus.CANCELLED);
+        notifyJobOutcome(splitJob, outcome, arguments);
+
+        cancelChunks(splitJob);
+        promoteCoalescedJob(splitJob);
+        cancelDescendants(splitJob);
+
+        System.out.println("[INFO] Split job '" + splitJob.getName() + "' can no longer complete, its remaining chunks have been cancelled\n");
+    }
+
+    /**
+     * Cancel every chunk of a split job that hasn't already finished or been requested to cancel
+     *
+     * @param splitJob The split job
+     */
+    private void cancelChunks(Job splitJob) {
+        for (Job chunk : splitJob.getChunks()) {
+            JobStatus chunkStatus = jobManager.getJobStatus(chunk);
+
+            if (chunkStatus != JobStatus.SENT && chunkStatus != JobStatus.CANCELLED && chunkStatus != JobStatus.REJECTED && chunkStatus != JobStatus.REQUESTED_CANCEL) {
+                cancelJob(chunk);
+            }
+        }
+    }
+
+    /**
+     * Notify the initiator that a job has completed, been cancelled or been rejected. The jobs of a group are instead
+     * counted towards their group, the initiator being notified of the group's progress at each checkpoint and once
+     * when every job in the group has finished
+     *
+     * @param job       The job that has finished
+     * @param outcome   The message type of the outcome, COMPLETE_JOB, CANCEL_JOB_CONFIRM or REJECT_JOB
+     * @param arguments Any further arguments of the message following the job name, each preceded by a comma
+     */
+    private void notifyJobOutcome(Job job, MessageTypeOut outcome, String arguments) {
+        JobGroup group = job.getGroup();
+
+        // A chunk of a split job isn't known to the initiator, if it fails then so has the split job
+        if (job.getSplitFrom() != null) {
+            if (outcome != MessageTypeOut.COMPLETE_JOB) {
+                failSplitJob(job.getSplitFrom(), outcome, arguments);
+            }
+
+            return;
+        }
+
+        if (group == null) {
+            messageManager.send(outcome.toString() + "," + job.getName() + arguments, initiatorAddr, initiatorPort);
+            System.out.println("");
+
+            return;
+        }
+
+        if (outcome == MessageTypeOut.COMPLETE_JOB) {
+            group.recordCompletion();
+        } else {
+            group.recordFailure();
+        }
+
+        if (group.isFinished()) {
+            messageManager.send(MessageTypeOut.GROUP_COMPLETE.toString() + "," + group.getName() + "," + group.getCompleted() + "," + group.getFailed(), initiatorAddr, initiatorPort);
+            System.out.println("");
+
+            System.out.println("[INFO] Job group '" + group.getName() + "' has finished: " + group.toString() + "\n");
+        } else if (group.isCheckpoint()) {
+            messageManager.send(MessageTypeOut.GROUP_PROGRESS.toString() + "," + group.getName() + "," + group.getCompleted() + "," + group.getFailed() + "," + group.getSize(), initiatorAddr, initiatorPort);
+            System.out.println("");
+        }
+    }
+
+    /**
+     * When a cancelled job was the in flight copy of identical work, the first job coalesced with it is run in its place
+     * so that the jobs waiting on it still complete
+     *
+     * @param cancelledJob The job that has been cancelled
+     */
+    private void promoteCoalescedJob(Job cancelledJob) {
+        if (!resultCacheManager.isEnabled()) {
+            return;
+        }
+
+        Job promotedJob = resultCacheManager.cancel(cancelledJob);
+
+        if (promotedJob != null) {
+            jobManager.updateJobStatus(promotedJob, JobStatus.UNALLOCATED);
+
+            System.out.println("[INFO] Coalesced job '" + promotedJob.getName() + "' will be run in place of cancelled job '" + cancelledJob.getName() + "'\n");
+        }
+    }
+
+    /**
+     * Release the jobs waiting on a completed job whose parents have now all completed, ready to be allocated
+     *
+     * @param completedJob The job that has completed
+     */
+    private void releaseDependants(Job completedJob) {
+        for (Job releasedJob : jobManager.releaseDependants(completedJob)) {
+            System.out.println("[INFO] Job '" + releasedJob.getName() + "' released as all of its parents have completed\n");
+        }
+    }
+
+    /**
+     * Cancel every job waiting on a job which will never complete, directly or indirectly, as they can never run
+     *
+     * @param failedJob The job that has been cancelled or rejected
+     */
+    private void cancelDescendants(Job failedJob) {
+        for (Job descendant : jobManager.getWaitingDescendants(failedJob)) {
+            jobManager.updateJobStatus(descendant, JobStatus.CANCELLED);
+            notifyJobOutcome(descendant, MessageTypeOut.CANCEL_JOB_CONFIRM, "");
+
+            System.out.println("[INFO] Job '" + descendant.getName() + "' cancelled as its parent job '" + failedJob.getName() + "' will never complete\n");
+        }
+    }
+
+    /**
+     * Set the optional attributes of a job supplied in a NEW_JOB message, each in the form attribute=value
+     *
+     * @param job  The job to set the attributes of
+     * @param args The message broken up into elements based on commas
+     * @param pos  The index of the first attribute in the message
+     *
+     * @return Whether or not every attribute was recognised and valid
+     */
+    private boolean setJobAttributes(Job job, String[] args, int pos) {
+        for (int i = pos; i < args.length; i++) {
+            String[] attribute = args[i].split("=", 2);
+
+            if (attribute.length != 2) {
+                return false;
+            }
+
+            switch (attribute[0].trim().toLowerCase()) {
+                case "weight":
+                    int weight = getValidIntArg(attribute, 1);
+
+                    if (weight < 1) {
+                        return false;
+                    }
+
+                    job.setWeight(weight);
+
+                    break;
+                case "memory":
+                    int memory = getValidIntArg(attribute, 1);
+
+                    if (memory < 0) {
+                        return false;
+                    }
+
+                    job.setMemory(memory);
+
+                    break;
+                case "disk":
+                    int disk = getValidIntArg(attribute, 1);
+
+                    if (disk < 0) {
+                        return false;
+                    }
+
+                    job.setDisk(disk);
+
+                    break;
+                case "user":
+                    if (attribute[1].trim().isEmpty()) {
+                        return false;
+                    }
+
+                    job.setUser(attribute[1].trim());
+
+                    break;
+                case "selector":
+                    LabelSelector selector = LabelSelector.parse(attribute[1]);
+
+                    if (selector == null) {
+                        return false;
+                    }
+
+                    job.setSelector(selector);
+
+                    break;
+                case "split":
+                    int split = getValidIntArg(attribute, 1);
+
+                    if (split < 1) {
+                        return false;
+                    }
+
+                    job.setSplit(split);
+
+                    break;
+                case "gang":
+                    int gang = getValidIntArg(attribute, 1);
+
+                    if (gang < 1) {
+                        return false;
+                    }
+
+                    job.setGang(gang);
+
+                    break;
+                case "parents":
+                    for (String parentName : attribute[1].split("\\+")) {
+                        Job parent = jobManager.getByName(parentName.trim());
+
+                        if (parent == null || parent == job) {
+                            return false;
+                        }
+
+                        job.addParent(parent);
+                    }
+
+                    break;
+                case "deadline":
+                    long deadline = getValidLongArg(attribute, 1);
+
+                    if (deadline < 1) {
+                        return false;
+                    }
+
+                    job.setDeadline(deadline);
+
+                    break;
+                case "key":
+                    if (attribute[1].trim().isEmpty()) {
+                        return false;
+                    }
+
+                    job.setKey(attribute[1].trim());
+
+                    break;
+                case "content":
+                    if (attribute[1].trim().isEmpty()) {
+                        return false;
+                    }
+
+                    job.setContent(attribute[1].trim());
+
+                    break;
+                default:
+                    return false;
+            }
+        }
+
+        // A job is either split into chunks or run as a gang, not both
+        return job.getSplit() == 1 || job.getGang() == 1;
+    }
+
     /**
      * Validate the MessageTypeIn of the message
      *
@@ -628,6 +1532,26 @@ public class LoadBalancer {
         }
     }
 
+    /**
+     * Validate a decimal argument with the message at the specified position
+     *
+     * @param args The message broken up into elements based on commas
+     * @param pos  The element to validate
+     *
+     * @return The parsed decimal or -1 if invalid or null
+     */
+    private double getValidDoubleArg(String[] args, int pos) {
+        if (args.length > pos && args[pos] != null) {
+            try {
+                return Double.parseDouble(args[pos].trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        } else {
+            return -1;
+        }
+    }
+
     /**
      * Validate an integer argument with the message at the specified position
      *
@@ -647,4 +1571,24 @@ public class LoadBalancer {
             return -1;
         }
     }
+
+    /**
+     * Validate a long argument with the message at the specified position
+     *
+     * @param args The message broken up into elements based on commas
+     * @param pos  The element to validate
+     *
+     * @return The parsed long or -1 if invalid or null
+     */
+    private long getValidLongArg(String[] args, int pos) {
+        if (args.length > pos && args[pos] != null) {
+            try {
+                return Long.parseLong(args[pos].trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        } else {
+            return -1;
+        }
+    }
 }
@@ -1,7 +1,10 @@
 package io.grimlock257.dnaos.loadbalancer;
 
+import io.grimlock257.dnaos.loadbalancer.message.Transport;
+
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.Arrays;
 
 /**
  * Main class of Load Balancer project
@@ -19,7 +22,7 @@ public class Main {
      * @param args The command line arguments supplied
      */
     public static void main(String[] args) {
-        if (args.length == 2) {
+        if (args.length >= 2) {
             // Get parameters from the supplied command line arguments
             int port = Integer.parseInt(args[0]);
 
@@ -27,10 +30,58 @@ public class Main {
             try {
                 allocationMethod = AllocationMethod.valueOf(args[1].trim().toUpperCase());
             } catch (IllegalArgumentException e) {
-                System.err.println("[ERROR] Invalid allocation method entered. Enter either WEIGHTED or NON_WEIGHTED, exiting...");
+                System.err.println("[ERROR] Invalid allocation method entered. Enter one of " + Arrays.toString(AllocationMethod.values()) + ", exiting...");
                 System.exit(1);
             }
 
+            LoadBalancer loadBalancer = new LoadBalancer(port, allocationMethod);
+
+            // Get any optional settings, supplied in the form <setting>=<value>
+            for (int i = 2; i < args.length; i++) {
+                String[] setting = args[i].split("=", 2);
+
+                try {
+                    switch (setting[0].trim().toLowerCase()) {
+                        case "straggler_factor":
+                            loadBalancer.setStragglerFactor(Double.parseDouble(setting[1].trim()));
+
+                            break;
+                        case "load_bound":
+                            loadBalancer.setLoadBound(Double.parseDouble(setting[1].trim()));
+
+                            break;
+                        case "result_cache":
+                            loadBalancer.setResultCacheSize(Integer.parseInt(setting[1].trim()));
+
+                            break;
+                        case "result_ttl":
+                            loadBalancer.setResultCacheTtl(Integer.parseInt(setting[1].trim()));
+
+                            break;
+                        case "backfill":
+                            String backfill = setting[1].trim().toLowerCase();
+
+                            if (!backfill.equals("true") && !backfill.equals("false")) {
+                                throw new IllegalArgumentException();
+                            }
+
+                            loadBalancer.setBackfill(Boolean.parseBoolean(backfill));
+
+                            break;
+                        case "transport":
+                            loadBalancer.setTransport(Transport.valueOf(setting[1].trim().toUpperCase()));
+
+                            break;
+                        default:
+                            System.err.println("[ERROR] Unknown setting '" + setting[0] + "', exiting...");
+                            System.exit(1);
+                    }
+                } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                    System.err.println("[ERROR] Invalid value supplied for setting '" + setting[0] + "', exiting...");
+                    System.exit(1);
+                }
+            }
+
             String ip = null;
             try {
                 ip = InetAddress.getLocalHost().getHostAddress();
@@ -46,12 +97,14 @@ public class Main {
             System.out.println("[INFO] - IP: " + ip);
             System.out.println("[INFO] - Port: " + port);
             System.out.println("[INFO] - Allocation Method: " + allocationMethod.toString());
+            for (int i = 2; i < args.length; i++) {
+                System.out.println("[INFO] - Setting: " + args[i].trim());
+            }
             System.out.println("===============================================================================");
 
-            LoadBalancer loadBalancer = new LoadBalancer(port, allocationMethod);
             loadBalancer.start();
         } else {
-            System.err.println("[ERROR] Invalid arguments supplied! Usage: java loadbalancer <port> <WEIGHTED | NON_WEIGHTED>");
+            System.err.println("[ERROR] Invalid arguments supplied! Usage: java loadbalancer <port> <WEIGHTED | NON_WEIGHTED | PREDICTED_COMPLETION | BEST_FIT | FIRST_FIT_DECREASING | CONSISTENT_HASHING> [straggler_factor=<factor>] [load_bound=<factor>] [result_cache=<entries>] [result_ttl=<seconds>] [backfill=<true | false>] [transport=<udp | tcp | shm>]");
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+package io.grimlock257.dnaos.loadbalancer.job;
+
+/**
+ * Data structure to store a streaming summary of observed job durations, from which quantiles can be estimated
+ * Durations are counted in logarithmically sized buckets, so the memory used is fixed no matter how many durations
+ * are recorded, while any quantile is estimated to within the relative accuracy of a bucket
+ *
+ * Adam Watson
+ * Year 2 - Computer Systems Engineering
+ * Distributed Network Architecture & Operating Systems Module CW-2
+ */
+public class DurationSketch {
+    // Ratio between the bounds of each bucket, giving estimates within 5% of the actual duration
+    private final double GAMMA = 1.1;
+    private final double LOG_GAMMA = Math.log(GAMMA);
+
+    // Enough buckets to cover durations from 1 millisecond up to roughly two days
+    private final int BUCKETS = 200;
+
+    private int[] counts;
+    private long count;
+
+    /**
+     * Create a new, empty duration sketch
+     */
+    public DurationSketch() {
+        this.counts = new int[BUCKETS];
+        this.count = 0;
+    }
+
+    /**
+     * Record an observed duration in the sketch
+     *
+     * @param duration The observed duration, in milliseconds
+     */
+    public void add(double duration) {
+        int bucket = (duration <= 1) ? 0 : Math.min(BUCKETS - 1, (int) Math.ceil(Math.log(duration) / LOG_GAMMA));
+
+        counts[bucket]++;
+        count++;
+    }
+
+    /**
+     * @return The amount of durations recorded in the sketch
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Estimate the duration at the specified quantile of all recorded durations
+     *
+     * @param quantile The quantile to estimate, between 0 and 1 (e.g. 0.5 for the median)
+     *
+     * @return The estimated duration in milliseconds, or 0 if no durations have been recorded
+     */
+    public double getQuantile(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+
+        // Walk through the buckets until the one containing the requested rank is found
+        long rank = (long) Math.floor(quantile * (count - 1));
+        long seen = 0;
+
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts[bucket];
+
+            if (seen > rank) {
+                // Estimate using the point in the bucket with equal relative error to either bound
+                return (bucket == 0) ? 1 : (2 * Math.pow(GAMMA, bucket)) / (GAMMA + 1);
+            }
+        }
+
+        return 2 * Math.pow(GAMMA, BUCKETS - 1) / (GAMMA + 1);
+    }
+}
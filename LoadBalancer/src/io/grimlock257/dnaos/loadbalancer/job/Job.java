@@ -1,5 +1,8 @@
 package io.grimlock257.dnaos.loadbalancer.job;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Represents a Job within the Load Balancer project
  *
@@ -11,6 +14,45 @@ public class Job {
     private String name;
     private int duration;
 
+    // The amount of node capacity slots the job occupies while running
+    private int weight = 1;
+
+    // The memory and scratch disk the job requires while running, in MB
+    private int memory = 0;
+    private int disk = 0;
+
+    // The user the job was submitted on behalf of, resources are shared fairly between users
+    private String user = "default";
+
+    // Labels a node must or must not have to run the job, null if the job can run on any node
+    private LabelSelector selector = null;
+
+    // The affinity key of the job, such as the dataset it processes, null if the job has no affinity
+    private String key = null;
+
+    // The content key of the job, identifying the work it carries out, null if the job is identified by its name
+    private String content = null;
+
+    // The time the job must complete by in milliseconds since the epoch, 0 if the job has no deadline
+    private long deadline = 0;
+
+    // The jobs which must complete before the job can be allocated
+    private ArrayList<Job> parents = new ArrayList<>();
+
+    // The group the job was submitted as part of, null if the job was submitted on its own
+    private JobGroup group = null;
+
+    // The most chunks the job may be split into to run across several nodes at once, 1 if the job can't be split
+    private int split = 1;
+
+    // How many parts of the job must run at the same time, each on its own slot, 1 if the job isn't a gang job
+    private int gang = 1;
+
+    // The chunks the job has been split into, and for a chunk, the job it is part of and where its work range starts
+    private ArrayList<Job> chunks = new ArrayList<>();
+    private Job splitFrom = null;
+    private int rangeStart = 0;
+
     /**
      * Create a new job with the supplied name and duration
      *
@@ -36,11 +78,276 @@ public class Job {
         return this.duration;
     }
 
+    /**
+     * @return The amount of node capacity slots the job occupies while running
+     */
+    public int getWeight() {
+        return this.weight;
+    }
+
+    /**
+     * Set the amount of node capacity slots the job occupies while running
+     *
+     * @param weight The slot weight of the job, at least 1
+     */
+    public void setWeight(int weight) {
+        this.weight = weight;
+    }
+
+    /**
+     * @return The memory the job requires while running, in MB
+     */
+    public int getMemory() {
+        return this.memory;
+    }
+
+    /**
+     * Set the memory the job requires while running
+     *
+     * @param memory The required memory in MB
+     */
+    public void setMemory(int memory) {
+        this.memory = memory;
+    }
+
+    /**
+     * @return The scratch disk the job requires while running, in MB
+     */
+    public int getDisk() {
+        return this.disk;
+    }
+
+    /**
+     * Set the scratch disk the job requires while running
+     *
+     * @param disk The required scratch disk in MB
+     */
+    public void setDisk(int disk) {
+        this.disk = disk;
+    }
+
+    /**
+     * @return The user the job was submitted on behalf of
+     */
+    public String getUser() {
+        return this.user;
+    }
+
+    /**
+     * Set the user the job was submitted on behalf of
+     *
+     * @param user The name of the user
+     */
+    public void setUser(String user) {
+        this.user = user;
+    }
+
+    /**
+     * @return The label selector nodes must match to run the job, or null if the job can run on any node
+     */
+    public LabelSelector getSelector() {
+        return this.selector;
+    }
+
+    /**
+     * Set the label selector nodes must match to run the job
+     *
+     * @param selector The label selector
+     */
+    public void setSelector(LabelSelector selector) {
+        this.selector = selector;
+    }
+
+    /**
+     * @return The affinity key of the job, or null if the job has no affinity
+     */
+    public String getKey() {
+        return this.key;
+    }
+
+    /**
+     * Set the affinity key of the job, jobs with the same key are routed to the same node where possible
+     *
+     * @param key The affinity key
+     */
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    /**
+     * @return The content key of the job, or null if the job is identified by its name
+     */
+    public String getContent() {
+        return this.content;
+    }
+
+    /**
+     * Set the content key of the job, jobs with the same content key carry out the same work whatever their names
+     *
+     * @param content The content key
+     */
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    /**
+     * @return The time the job must complete by in milliseconds since the epoch, 0 if the job has no deadline
+     */
+    public long getDeadline() {
+        return this.deadline;
+    }
+
+    /**
+     * Set the time the job must complete by, jobs with earlier deadlines are allocated first
+     *
+     * @param deadline The deadline in milliseconds since the epoch
+     */
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * @return The jobs which must complete before the job can be allocated
+     */
+    public List<Job> getParents() {
+        return this.parents;
+    }
+
+    /**
+     * Add a job which must complete before the job can be allocated
+     *
+     * @param parent The parent job
+     */
+    public void addParent(Job parent) {
+        this.parents.add(parent);
+    }
+
+    /**
+     * @return The group the job was submitted as part of, or null if the job was submitted on its own
+     */
+    public JobGroup getGroup() {
+        return this.group;
+    }
+
+    /**
+     * Set the group the job was submitted as part of
+     *
+     * @param group The job group
+     */
+    public void setGroup(JobGroup group) {
+        this.group = group;
+    }
+
+    /**
+     * @return The most chunks the job may be split into, 1 if the job can't be split
+     */
+    public int getSplit() {
+        return this.split;
+    }
+
+    /**
+     * Set the most chunks the job may be split into to run across several nodes at once
+     *
+     * @param split The most chunks, at least 1
+     */
+    public void setSplit(int split) {
+        this.split = split;
+    }
+
+    /**
+     * @return How many parts of the job must run at the same time, 1 if the job isn't a gang job
+     */
+    public int getGang() {
+        return this.gang;
+    }
+
+    /**
+     * Set how many parts of the job must run at the same time, the parts only being started once there are enough
+     * free slots for all of them
+     *
+     * @param gang The amount of parts, at least 1
+     */
+    public void setGang(int gang) {
+        this.gang = gang;
+    }
+
+    /**
+     * @return The chunks the job has been split into, or the parts of a gang job, empty if the job hasn't been split
+     */
+    public List<Job> getChunks() {
+        return this.chunks;
+    }
+
+    /**
+     * @return The job the chunk is part of, or null if the job isn't a chunk of a split job or a part of a gang job
+     */
+    public Job getSplitFrom() {
+        return this.splitFrom;
+    }
+
+    /**
+     * Create a chunk of the job, covering part of the job's work range, or one part of a gang job, which covers the
+     * whole of it. The chunk needs the same resources and is subject to the same constraints as the job
+     *
+     * @param index      The position of the chunk within the job, starting at 1
+     * @param rangeStart Where the work range of the chunk starts within the job's work range, in seconds, ignored for gang jobs
+     * @param duration   The duration of the chunk
+     *
+     * @return The chunk
+     */
+    public Job createChunk(int index, int rangeStart, int duration) {
+        Job chunk = new Job(name + ":" + index, duration);
+
+        chunk.weight = this.weight;
+        chunk.memory = this.memory;
+        chunk.disk = this.disk;
+        chunk.user = this.user;
+        chunk.selector = this.selector;
+        chunk.key = this.key;
+        chunk.deadline = this.deadline;
+        chunk.splitFrom = this;
+        chunk.rangeStart = rangeStart;
+
+        chunks.add(chunk);
+
+        return chunk;
+    }
+
+    /**
+     * Format the job as the arguments of a NEW_JOB message, being the name, duration and any attributes which differ
+     * from their defaults in the form attribute=value
+     *
+     * @return The formatted message arguments
+     */
+    public String toMessageArgs() {
+        return name + "," + duration + (weight != 1 ? ",weight=" + weight : "") + (memory != 0 ? ",memory=" + memory : "") + (disk != 0 ? ",disk=" + disk : "") + (isSplitChunk() ? ",range=" + rangeStart + "-" + (rangeStart + duration) : "");
+    }
+
     /**
      * @return The job formatted as a string of properties
      */
     @Override
     public String toString() {
-        return "Name: " + name + ", Duration: " + duration;
+        return "Name: " + name + ", Duration: " + duration + (weight != 1 ? ", Weight: " + weight : "") + (memory != 0 ? ", Memory: " + memory + "MB" : "") + (disk != 0 ? ", Disk: " + disk + "MB" : "") + ", User: " + user + (selector != null ? ", Selector: " + selector : "") + (key != null ? ", Key: " + key : "") + (content != null ? ", Content: " + content : "") + (deadline != 0 ? ", Deadline: " + String.format("%tT", deadline) : "") + (!parents.isEmpty() ? ", Parents: " + parentsToString() : "") + (group != null ? ", Group: " + group.getName() : "") + (split > 1 ? ", Split: " + split : "") + (gang > 1 ? ", Gang: " + gang : "") + (isSplitChunk() ? ", Range: " + rangeStart + "-" + (rangeStart + duration) : "");
+    }
+
+    /**
+     * @return Whether or not the job is a chunk covering part of the work range of a split job
+     */
+    private boolean isSplitChunk() {
+        return splitFrom != null && splitFrom.split > 1;
+    }
+
+    /**
+     * @return The names of the parent jobs separated by '+'
+     */
+    private String parentsToString() {
+        StringBuilder sb = new StringBuilder();
+
+        for (Job parent : parents) {
+            sb.append(sb.length() > 0 ? "+" : "").append(parent.getName());
+        }
+
+        return sb.toString();
     }
 }
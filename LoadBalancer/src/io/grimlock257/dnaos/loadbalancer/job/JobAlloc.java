@@ -13,6 +13,12 @@ public class JobAlloc {
     private Node node;
     private JobStatus jobStatus;
 
+    // The time the job started running on the node, 0 whilst it is waiting in the node's local queue
+    private long startTime;
+
+    // The node running a speculative copy of the job, null if the job has not been speculatively re-executed
+    private Node speculativeNode;
+
     /**
      * Create a new object to store the allocation of a node to a job and the current status
      *
@@ -40,6 +46,38 @@ public class JobAlloc {
         this.node = node;
     }
 
+    /**
+     * @return The time the job started running on the allocated node, 0 if it has not yet started
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Set the time the job started running on the allocated node
+     *
+     * @param startTime The start time in milliseconds, 0 if the job is waiting in the node's local queue
+     */
+    public void setStartTime(long startTime) {
+        this.startTime = startTime;
+    }
+
+    /**
+     * @return The node running a speculative copy of the job, or null if there is none
+     */
+    public Node getSpeculativeNode() {
+        return speculativeNode;
+    }
+
+    /**
+     * Set the node that is running a speculative copy of the job
+     *
+     * @param speculativeNode The node running the speculative copy, or null to clear
+     */
+    public void setSpeculativeNode(Node speculativeNode) {
+        this.speculativeNode = speculativeNode;
+    }
+
     /**
      * @return The JobStatus of the job
      */
@@ -61,6 +99,6 @@ public class JobAlloc {
      */
     @Override
     public String toString() {
-        return "Node: " + (node != null ? node.getName() : "NULL") + ", JobStatus: " + jobStatus.toString();
+        return "Node: " + (node != null ? node.getName() : "NULL") + (speculativeNode != null ? ", Speculative Node: " + speculativeNode.getName() : "") + ", JobStatus: " + jobStatus.toString();
     }
 }
@@ -0,0 +1,109 @@
+package io.grimlock257.dnaos.loadbalancer.job;
+
+/**
+ * Represents a group of jobs within the Load Balancer project
+ * A group is submitted in one message and its jobs are run as normal, but rather than being notified of every job, the
+ * initiator is notified of the progress of the group at checkpoints and once when every job in the group has finished
+ *
+ * Adam Watson
+ * Year 2 - Computer Systems Engineering
+ * Distributed Network Architecture & Operating Systems Module CW-2
+ */
+public class JobGroup {
+    // How many progress checkpoints to notify the initiator of before the group completes
+    private final int CHECKPOINTS = 10;
+
+    private String name;
+    private int size;
+
+    // How many jobs in the group have completed, and how many were cancelled or rejected
+    private int completed;
+    private int failed;
+
+    /**
+     * Create a new job group with the supplied name and amount of jobs
+     *
+     * @param name The name of the group
+     * @param size The amount of jobs in the group
+     */
+    public JobGroup(String name, int size) {
+        this.name = name;
+        this.size = size;
+    }
+
+    /**
+     * @return The name of the group
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return The amount of jobs in the group
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * @return The amount of jobs in the group that have completed
+     */
+    public int getCompleted() {
+        return this.completed;
+    }
+
+    /**
+     * @return The amount of jobs in the group that were cancelled or rejected
+     */
+    public int getFailed() {
+        return this.failed;
+    }
+
+    /**
+     * Record a job in the group completing
+     */
+    public void recordCompletion() {
+        completed++;
+    }
+
+    /**
+     * Record a job in the group being cancelled or rejected
+     */
+    public void recordFailure() {
+        failed++;
+    }
+
+    /**
+     * @return Whether or not every job in the group has finished, whether completed, cancelled or rejected
+     */
+    public boolean isFinished() {
+        return completed + failed >= size;
+    }
+
+    /**
+     * @return Whether or not the jobs finished so far have just reached a progress checkpoint, the interval between
+     * checkpoints being rounded up so a group never has more checkpoints than intended
+     */
+    public boolean isCheckpoint() {
+        return (completed + failed) % Math.max(1, (int) Math.ceil(size / (double) CHECKPOINTS)) == 0;
+    }
+
+    /**
+     * Get the name of the job at the specified position within the group
+     *
+     * @param index The position of the job within the group, starting at 1
+     *
+     * @return The name of the job
+     */
+    public String getJobName(int index) {
+        return name + "#" + index;
+    }
+
+    /**
+     * @return The group formatted as a string of properties
+     */
+    @Override
+    public String toString() {
+        return "Name: " + name + ", Size: " + size + ", Completed: " + completed + ", Failed: " + failed;
+    }
+}
@@ -8,9 +8,13 @@ package io.grimlock257.dnaos.loadbalancer.job;
  * Distributed Network Architecture & Operating Systems Module CW-2
  */
 public enum JobStatus {
+    WAITING,
     UNALLOCATED,
     ALLOCATED,
+    SPLIT,
     REQUESTED_CANCEL,
     CANCELLED,
+    COALESCED,
+    REJECTED,
     SENT
 }
@@ -0,0 +1,119 @@
+package io.grimlock257.dnaos.loadbalancer.job;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Represents a label selector expression within the Load Balancer project
+ * A selector is a list of labels separated by '+', a node must have every label to be eligible to run the job, while
+ * a label prefixed with '!' must not be present on the node (e.g. 'ssd+!shared' selects nodes labelled 'ssd' but not
+ * labelled 'shared')
+ *
+ * Adam Watson
+ * Year 2 - Computer Systems Engineering
+ * Distributed Network Architecture & Operating Systems Module CW-2
+ */
+public class LabelSelector {
+    private LinkedHashSet<String> requiredLabels;
+    private LinkedHashSet<String> forbiddenLabels;
+
+    /**
+     * Create a new, empty label selector which every node matches
+     */
+    private LabelSelector() {
+        this.requiredLabels = new LinkedHashSet<>();
+        this.forbiddenLabels = new LinkedHashSet<>();
+    }
+
+    /**
+     * Parse a selector expression
+     *
+     * @param expression The selector expression, labels separated by '+' with forbidden labels prefixed with '!'
+     *
+     * @return The label selector, or null if the expression is invalid
+     */
+    public static LabelSelector parse(String expression) {
+        LabelSelector selector = new LabelSelector();
+
+        for (String term : expression.split("\\+")) {
+            String label = term.trim().toLowerCase();
+            boolean forbidden = label.startsWith("!");
+
+            if (forbidden) {
+                label = label.substring(1).trim();
+            }
+
+            if (!isValidLabel(label)) {
+                return null;
+            }
+
+            if (forbidden) {
+                selector.forbiddenLabels.add(label);
+            } else {
+                selector.requiredLabels.add(label);
+            }
+        }
+
+        return selector;
+    }
+
+    /**
+     * Check whether a label is valid, labels cannot be empty or contain the separators used by messages and selectors
+     *
+     * @param label The label to check
+     *
+     * @return Whether or not the label is valid
+     */
+    public static boolean isValidLabel(String label) {
+        return !label.isEmpty() && !label.matches(".*[,=+!\\s].*");
+    }
+
+    /**
+     * @return The labels a node must have to match the selector
+     */
+    public Set<String> getRequiredLabels() {
+        return requiredLabels;
+    }
+
+    /**
+     * @return The labels a node must not have to match the selector
+     */
+    public Set<String> getForbiddenLabels() {
+        return forbiddenLabels;
+    }
+
+    /**
+     * Check whether a node with the supplied labels matches the selector
+     *
+     * @param labels The labels of the node
+     *
+     * @return Whether or not the node matches
+     */
+    public boolean matches(Set<String> labels) {
+        for (String label : forbiddenLabels) {
+            if (labels.contains(label)) {
+                return false;
+            }
+        }
+
+        return labels.containsAll(requiredLabels);
+    }
+
+    /**
+     * @return The selector formatted as an expression
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        for (String label : requiredLabels) {
+            sb.append(sb.length() > 0 ? "+" : "").append(label);
+        }
+
+        for (String label : forbiddenLabels) {
+            sb.append(sb.length() > 0 ? "+" : "").append("!").append(label);
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,140 @@
+package io.grimlock257.dnaos.loadbalancer.managers;
+
+import io.grimlock257.dnaos.loadbalancer.job.DurationSketch;
+import io.grimlock257.dnaos.loadbalancer.job.Job;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Duration Manager for Load Balancer project
+ * This class learns how long jobs actually take from the jobs that have completed, grouped into job classes by the
+ * prefix of the job name, so predicted durations can be used in place of the declared duration of a job
+ *
+ * Adam Watson
+ * Year 2 - Computer Systems Engineering
+ * Distributed Network Architecture & Operating Systems Module CW-2
+ */
+public class DurationManager {
+    private static DurationManager instance = null;
+
+    // Maximum amount of job classes to remember, the least recently used class is forgotten when exceeded
+    private final int MAXIMUM_JOB_CLASSES = 256;
+
+    // Minimum amount of completions of a job class before its predictions are used over the declared duration
+    private final int MINIMUM_SAMPLES = 5;
+
+    private LinkedHashMap<String, DurationSketch> jobClasses;
+
+    /**
+     * DurationManager constructor
+     */
+    private DurationManager() {
+        // Access ordered so that the eldest entry is always the least recently used job class
+        this.jobClasses = new LinkedHashMap<String, DurationSketch>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DurationSketch> eldest) {
+                return size() > MAXIMUM_JOB_CLASSES;
+            }
+        };
+    }
+
+    /**
+     * Get the instance of the DurationManager singleton
+     *
+     * @return The instance of the DurationManager
+     */
+    public static DurationManager getInstance() {
+        if (instance == null) {
+            instance = new DurationManager();
+        }
+
+        return instance;
+    }
+
+    /**
+     * Find the class of a job from its name, being the name with any trailing numbering removed, so that for example
+     * 'render-12' and 'render-13' are both of the class 'render'
+     *
+     * @param job The job to find the class of
+     *
+     * @return The job class
+     */
+    public String getJobClass(Job job) {
+        String jobClass = job.getName().toLowerCase().replaceAll("[\\s_\\-#.0-9]+$", "");
+
+        return jobClass.isEmpty() ? job.getName().toLowerCase() : jobClass;
+    }
+
+    /**
+     * Record the runtime of a completed job against its job class. The runtime is normalised by the speed of the node
+     * that ran it, so the recorded duration is how long the job would have taken on a node with a speed factor of 1.0
+     *
+     * @param job         The job that has completed
+     * @param runtime     The observed runtime of the job, in milliseconds
+     * @param speedFactor The estimated speed of the node that ran the job
+     */
+    public synchronized void recordCompletion(Job job, long runtime, double speedFactor) {
+        if (runtime <= 0) {
+            return;
+        }
+
+        String jobClass = getJobClass(job);
+        DurationSketch sketch = jobClasses.get(jobClass);
+
+        if (sketch == null) {
+            sketch = new DurationSketch();
+            jobClasses.put(jobClass, sketch);
+        }
+
+        sketch.add(runtime * speedFactor);
+    }
+
+    /**
+     * Predict the duration of a job at the specified quantile from previous completions of its job class, falling back
+     * to the declared duration of the job if not enough of its class have completed yet
+     *
+     * @param job      The job to predict the duration of
+     * @param quantile The quantile to predict, between 0 and 1 (e.g. 0.5 for the median)
+     *
+     * @return The predicted duration of the job on a node with a speed factor of 1.0, in milliseconds
+     */
+    public synchronized double getPredictedDuration(Job job, double quantile) {
+        DurationSketch sketch = jobClasses.get(getJobClass(job));
+
+        if (sketch == null || sketch.getCount() < MINIMUM_SAMPLES) {
+            return job.getDuration() * 1000.0;
+        }
+
+        return sketch.getQuantile(quantile);
+    }
+
+    /**
+     * Used to display the learnt job classes in a nice, readable format
+     *
+     * @return The formatted string
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        // Iterate through the jobClasses LinkedHashMap, appending the predictions for each job class
+        int i = 0;
+        for (Map.Entry<String, DurationSketch> jobClassDetails : jobClasses.entrySet()) {
+            i++;
+
+            DurationSketch sketch = jobClassDetails.getValue();
+
+            sb.append("Job Class: ").append(jobClassDetails.getKey());
+            sb.append(", Completions: ").append(sketch.getCount());
+            sb.append(", p50: ").append(String.format("%.2f", sketch.getQuantile(0.5) / 1000)).append("s");
+            sb.append(", p95: ").append(String.format("%.2f", sketch.getQuantile(0.95) / 1000)).append("s");
+
+            // If we haven't reached the end of the list, add a new line
+            if (i != jobClasses.size())
+                sb.append("\n");
+        }
+
+        return sb.toString();
+    }
+}
@@ -2,11 +2,16 @@ package io.grimlock257.dnaos.loadbalancer.managers;
 
 import io.grimlock257.dnaos.loadbalancer.job.Job;
 import io.grimlock257.dnaos.loadbalancer.job.JobAlloc;
+import io.grimlock257.dnaos.loadbalancer.job.JobGroup;
 import io.grimlock257.dnaos.loadbalancer.job.JobStatus;
 import io.grimlock257.dnaos.loadbalancer.node.Node;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.function.ToIntFunction;
 
 /**
  * Job Manager for Load Balancer project
@@ -21,11 +26,61 @@ public class JobManager {
 
     private LinkedHashMap<Job, JobAlloc> jobs;
 
+    // Index of the jobs by lower case name, so large groups of jobs can be looked up without searching every job
+    private HashMap<String, Job> jobNames;
+
+    // The job groups that have been submitted, by lower case name
+    private LinkedHashMap<String, JobGroup> groups;
+
+    // The jobs that depend on each job, so they can be released as soon as all of their parents have completed
+    private HashMap<Job, ArrayList<Job>> dependants;
+
+    // The slots, memory and scratch disk claimed by each user's allocated jobs, kept up to date as jobs change status
+    private LinkedHashMap<String, int[]> userUsage;
+
+    // Orders jobs earliest deadline first, jobs with a deadline before those without
+    private final Comparator<Job> URGENCY_ORDER = new Comparator<Job>() {
+        @Override
+        public int compare(Job job1, Job job2) {
+            if (isMoreUrgent(job1, job2)) {
+                return -1;
+            } else if (isMoreUrgent(job2, job1)) {
+                return 1;
+            }
+
+            return 0;
+        }
+    };
+
+    // Orders jobs earliest deadline first, then the heaviest first, the heaviest needing the largest share of any one
+    // resource of the cluster
+    private final Comparator<Job> HEAVIEST_ORDER = new Comparator<Job>() {
+        @Override
+        public int compare(Job job1, Job job2) {
+            int urgencyDifference = URGENCY_ORDER.compare(job1, job2);
+
+            if (urgencyDifference != 0) {
+                return urgencyDifference;
+            }
+
+            return Double.compare(calcDominantShare(job2.getWeight(), job2.getMemory(), job2.getDisk()), calcDominantShare(job1.getWeight(), job1.getMemory(), job1.getDisk()));
+        }
+    };
+
+    // Counts of jobs with deadlines which completed in time, completed late, or were rejected as unable to complete in time
+    private int deadlinesMet;
+    private int deadlinesMissed;
+    private int deadlinesRejected;
+
     /**
      * Job constructor
      */
     private JobManager() {
         this.jobs = new LinkedHashMap<>();
+        this.jobNames = new HashMap<>();
+        this.groups = new LinkedHashMap<>();
+        this.dependants = new HashMap<>();
+        this.userUsage = new LinkedHashMap<>();
     }
 
     /**
@@ -42,12 +97,219 @@ public class JobManager {
     }
 
     /**
-     * Add a job to the jobs LinkedHashMap
+     * Add a job to the jobs LinkedHashMap, waiting for its parents to complete first if it has any that haven't yet.
+     * A job reusing the name of a finished job replaces it in the name index, so lookups by name find the new job
      *
      * @param job The job to add to the jobs LinkedHashMap
      */
     public void addJob(Job job) {
-        this.jobs.put(job, new JobAlloc(null, JobStatus.UNALLOCATED));
+        boolean waiting = false;
+
+        for (Job parent : job.getParents()) {
+            dependants.computeIfAbsent(parent, k -> new ArrayList<>()).add(job);
+
+            if (getJobStatus(parent) != JobStatus.SENT) {
+                waiting = true;
+            }
+        }
+
+        this.jobs.put(job, new JobAlloc(null, waiting ? JobStatus.WAITING : JobStatus.UNALLOCATED));
+        this.jobNames.put(job.getName().toLowerCase(), job);
+    }
+
+    /**
+     * Split a job into chunks of near equal duration which together cover the job's work range, adding each chunk to
+     * be allocated in place of the job
+     *
+     * @param job        The job to split
+     * @param chunkCount The amount of chunks to split the job into, no more than the duration of the job
+     *
+     * @return The chunks the job has been split into
+     */
+    public ArrayList<Job> splitJob(Job job, int chunkCount) {
+        ArrayList<Job> chunks = new ArrayList<>();
+        int rangeStart = 0;
+
+        for (int i = 1; i <= chunkCount; i++) {
+            int chunkDuration = (job.getDuration() / chunkCount) + (i <= job.getDuration() % chunkCount ? 1 : 0);
+            Job chunk = job.createChunk(i, rangeStart, chunkDuration);
+
+            addJob(chunk);
+            chunks.add(chunk);
+
+            rangeStart += chunkDuration;
+        }
+
+        updateJobStatus(job, JobStatus.SPLIT);
+
+        return chunks;
+    }
+
+    /**
+     * Start a gang job, adding each of its parts to be allocated in place of the job. Every part runs for the whole
+     * duration of the job
+     *
+     * @param job The gang job
+     *
+     * @return The parts of the job
+     */
+    public ArrayList<Job> startGang(Job job) {
+        ArrayList<Job> parts = new ArrayList<>();
+
+        for (int i = 1; i <= job.getGang(); i++) {
+            Job part = job.createChunk(i, 0, job.getDuration());
+
+            addJob(part);
+            parts.add(part);
+        }
+
+        updateJobStatus(job, JobStatus.SPLIT);
+
+        return parts;
+    }
+
+    /**
+     * Check whether every chunk of a split job, or every part of a gang job, has completed, so the job itself is complete.
+     * A job requested to be cancelled is complete too if its chunks all completed before they could be cancelled
+     *
+     * @param job The split job
+     *
+     * @return Whether or not the job is still split, or waiting to be cancelled, and all of its chunks have completed
+     */
+    public boolean isSplitJobComplete(Job job) {
+        JobStatus jobStatus = getJobStatus(job);
+
+        if (jobStatus != JobStatus.SPLIT && jobStatus != JobStatus.REQUESTED_CANCEL) {
+            return false;
+        }
+
+        for (Job chunk : job.getChunks()) {
+            if (getJobStatus(chunk) != JobStatus.SENT) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Add a job group, the jobs in the group are added separately
+     *
+     * @param group The job group to add
+     */
+    public void addGroup(JobGroup group) {
+        this.groups.put(group.getName().toLowerCase(), group);
+    }
+
+    /**
+     * Find the specified job group using the supplied name
+     *
+     * @param groupName The name of the job group
+     *
+     * @return The job group matching the name, or null if not found
+     */
+    public JobGroup getGroup(String groupName) {
+        return groups.get(groupName.toLowerCase());
+    }
+
+    /**
+     * Used to display the job groups in a nice, readable format
+     *
+     * @return The formatted string
+     */
+    public String groupsToString() {
+        StringBuilder sb = new StringBuilder();
+
+        // Iterate through the groups LinkedHashMap, appending the progress of each group
+        int i = 0;
+        for (JobGroup group : groups.values()) {
+            i++;
+
+            sb.append(group.toString());
+
+            // If we haven't reached the end of the list, add a new line
+            if (i != groups.size())
+                sb.append("\n");
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Release the waiting jobs depending on a completed job whose parents have now all completed, so they can be
+     * allocated
+     *
+     * @param job The job that has completed
+     *
+     * @return The jobs which have been released
+     */
+    public ArrayList<Job> releaseDependants(Job job) {
+        ArrayList<Job> releasedJobs = new ArrayList<>();
+
+        for (Job dependant : dependants.getOrDefault(job, new ArrayList<>())) {
+            if (getJobStatus(dependant) != JobStatus.WAITING) {
+                continue;
+            }
+
+            boolean ready = true;
+
+            for (Job parent : dependant.getParents()) {
+                if (getJobStatus(parent) != JobStatus.SENT) {
+                    ready = false;
+
+                    break;
+                }
+            }
+
+            if (ready) {
+                updateJobStatus(dependant, JobStatus.UNALLOCATED);
+                releasedJobs.add(dependant);
+            }
+        }
+
+        return releasedJobs;
+    }
+
+    /**
+     * Find every waiting job that depends on a job directly or indirectly, for when the job will never complete
+     *
+     * @param job The job that will never complete
+     *
+     * @return The waiting descendants of the job, parents before their children
+     */
+    public ArrayList<Job> getWaitingDescendants(Job job) {
+        ArrayList<Job> descendants = new ArrayList<>();
+        ArrayList<Job> toVisit = new ArrayList<>(dependants.getOrDefault(job, new ArrayList<>()));
+
+        while (!toVisit.isEmpty()) {
+            Job descendant = toVisit.remove(0);
+
+            if (getJobStatus(descendant) == JobStatus.WAITING && !descendants.contains(descendant)) {
+                descendants.add(descendant);
+                toVisit.addAll(dependants.getOrDefault(descendant, new ArrayList<>()));
+            }
+        }
+
+        return descendants;
+    }
+
+    /**
+     * Check whether any parent of the job has been cancelled or rejected, in which case the job can never be allocated
+     *
+     * @param job The job to check
+     *
+     * @return Whether or not a parent of the job will never complete
+     */
+    public boolean hasFailedParent(Job job) {
+        for (Job parent : job.getParents()) {
+            JobStatus parentStatus = getJobStatus(parent);
+
+            if (parentStatus == JobStatus.CANCELLED || parentStatus == JobStatus.REJECTED) {
+                return true;
+            }
+        }
+
+        return false;
     }
 
     /**
@@ -60,9 +322,13 @@ public class JobManager {
         // Iterate through the jobs LinkedHashMap to find the supplied job
         for (Map.Entry<Job, JobAlloc> jobDetails : jobs.entrySet()) {
             if (jobDetails.getKey() == job && jobDetails.getValue().getJobStatus() == JobStatus.UNALLOCATED) {
-                jobDetails.getValue().setJobStatus(JobStatus.ALLOCATED);
+                jobDetails.getValue().setStartTime(0);
+                setJobStatus(job, jobDetails.getValue(), JobStatus.ALLOCATED);
                 jobDetails.getValue().setNode(node);
 
+                // The job starts straight away if the node has enough free slots, otherwise it waits in the node's local queue
+                startQueuedJobs(node);
+
                 System.out.println("[INFO] Job '" + job.getName() + "' been allocated to '" + node.getName() + "'\n");
             } else if (jobDetails.getKey() == job && jobDetails.getValue().getJobStatus() == JobStatus.ALLOCATED) {
                 System.out.println("[ERROR] Job '" + job.getName() + "' has already been allocated\n");
@@ -70,23 +336,221 @@ public class JobManager {
         }
     }
 
+    /**
+     * Move an allocated job from one node to another. The move only happens if the job is still allocated to the
+     * node it is being moved from, so a job that has since completed, been cancelled or been deallocated is left alone
+     *
+     * @param job      The job that is being moved
+     * @param fromNode The node the job is expected to currently be allocated to
+     * @param toNode   The node which is now being allocated the job
+     *
+     * @return Whether or not the job was moved
+     */
+    public synchronized boolean reallocateJob(Job job, Node fromNode, Node toNode) {
+        JobAlloc jobAlloc = jobs.get(job);
+
+        if (jobAlloc == null || jobAlloc.getJobStatus() != JobStatus.ALLOCATED || !fromNode.equals(jobAlloc.getNode())) {
+            return false;
+        }
+
+        jobAlloc.setNode(toNode);
+        jobAlloc.setStartTime(0);
+
+        startQueuedJobs(toNode);
+
+        System.out.println("[INFO] Job '" + job.getName() + "' been reallocated from node '" + fromNode.getName() + "' to node '" + toNode.getName() + "'\n");
+
+        return true;
+    }
+
+    /**
+     * Return a single allocated job to the unallocated queue so that it is allocated again
+     *
+     * @param job The job to deallocate
+     */
+    public synchronized void deallocateJob(Job job) {
+        JobAlloc jobAlloc = jobs.get(job);
+
+        if (jobAlloc != null && jobAlloc.getJobStatus() == JobStatus.ALLOCATED) {
+            setJobStatus(job, jobAlloc, JobStatus.UNALLOCATED);
+            jobAlloc.setNode(null);
+            jobAlloc.setSpeculativeNode(null);
+            jobAlloc.setStartTime(0);
+
+            System.out.println("[INFO] Job '" + job.getName() + "' been returned to the unallocated queue");
+        }
+    }
+
     /**
      * Deallocate any jobs associated with the supplied node
      *
      * @param node The node to deallocate jobs from
      */
-    public void deallocateJobs(Node node) {
+    public synchronized void deallocateJobs(Node node) {
         // Iterate through the jobs LinkedHashMap to find jobs allocated to the supplied node
         for (Map.Entry<Job, JobAlloc> jobDetails : jobs.entrySet()) {
-            if (jobDetails.getValue().getJobStatus() != JobStatus.SENT && jobDetails.getValue().getNode() != null && jobDetails.getValue().getNode().equals(node)) {
-                jobDetails.getValue().setJobStatus(JobStatus.UNALLOCATED);
-                jobDetails.getValue().setNode(null);
+            JobAlloc jobAlloc = jobDetails.getValue();
+
+            if (jobAlloc.getJobStatus() != JobStatus.SENT && node.equals(jobAlloc.getSpeculativeNode())) {
+                // Only the speculative copy was running on the node, the original carries on as normal
+                jobAlloc.setSpeculativeNode(null);
 
-                System.out.println("[INFO] Job '" + jobDetails.getKey().getName() + "' been deallocated from node '" + node.getName() + "'");
+                System.out.println("[INFO] Speculative copy of job '" + jobDetails.getKey().getName() + "' been deallocated from node '" + node.getName() + "'");
+            } else if (jobAlloc.getJobStatus() != JobStatus.SENT && jobAlloc.getNode() != null && jobAlloc.getNode().equals(node)) {
+                if (jobAlloc.getSpeculativeNode() != null) {
+                    // The speculative copy is still running elsewhere, so it becomes the original
+                    jobAlloc.setNode(jobAlloc.getSpeculativeNode());
+                    jobAlloc.setSpeculativeNode(null);
+
+                    System.out.println("[INFO] Job '" + jobDetails.getKey().getName() + "' been deallocated from node '" + node.getName() + "', continuing with speculative copy on node '" + jobAlloc.getNode().getName() + "'");
+                } else {
+                    setJobStatus(jobDetails.getKey(), jobAlloc, JobStatus.UNALLOCATED);
+                    jobAlloc.setNode(null);
+                    jobAlloc.setStartTime(0);
+
+                    System.out.println("[INFO] Job '" + jobDetails.getKey().getName() + "' been deallocated from node '" + node.getName() + "'");
+                }
             }
         }
     }
 
+    /**
+     * Record that resources may have been freed on the node, meaning the node will start the jobs waiting in its local
+     * queue in order for as long as the oldest waiting job fits in the free slots, memory and scratch disk. This
+     * mirrors the order in which the node itself processes its queue
+     *
+     * @param node The node that may have freed resources
+     */
+    public void startQueuedJobs(Node node) {
+        int freeSlots = node.getCapacity() - getStartedNodeUsage(node, node::getSlotWeight);
+        int freeMemory = node.getMemory() - getStartedNodeUsage(node, Job::getMemory);
+        int freeDisk = node.getDisk() - getStartedNodeUsage(node, Job::getDisk);
+
+        for (Map.Entry<Job, JobAlloc> jobDetails : jobs.entrySet()) {
+            Job job = jobDetails.getKey();
+            JobAlloc jobAlloc = jobDetails.getValue();
+
+            if (jobAlloc.getJobStatus() == JobStatus.ALLOCATED && node.equals(jobAlloc.getNode()) && jobAlloc.getStartTime() == 0) {
+                int slotWeight = node.getSlotWeight(job);
+
+                if (slotWeight > freeSlots || (node.getMemory() > 0 && job.getMemory() > freeMemory) || (node.getDisk() > 0 && job.getDisk() > freeDisk)) {
+                    break;
+                }
+
+                jobAlloc.setStartTime(System.currentTimeMillis());
+                freeSlots -= slotWeight;
+                freeMemory -= job.getMemory();
+                freeDisk -= job.getDisk();
+            }
+        }
+    }
+
+    /**
+     * Find the most recently allocated job waiting in the local queue of one node that another node is eligible for and
+     * has enough free resources to start straight away, this is the job that would wait the longest so is the best one to steal
+     *
+     * @param victimNode The backed up node to steal a job from
+     * @param thiefNode  The idle node that would run the stolen job
+     *
+     * @return The job to steal, or null if none of the queued jobs can run on the idle node
+     */
+    public Job getStealableJob(Node victimNode, Node thiefNode) {
+        Job stealableJob = null;
+
+        for (Map.Entry<Job, JobAlloc> jobDetails : jobs.entrySet()) {
+            JobAlloc jobAlloc = jobDetails.getValue();
+
+            if (jobAlloc.getJobStatus() == JobStatus.ALLOCATED && victimNode.equals(jobAlloc.getNode()) && jobAlloc.getStartTime() == 0 && thiefNode.canFit(jobDetails.getKey()) && thiefNode.matchesSelector(jobDetails.getKey())) {
+                stealableJob = jobDetails.getKey();
+            }
+        }
+
+        return stealableJob;
+    }
+
+    /**
+     * Find the jobs that have been running for longer than their expected duration multiplied by the supplied factor
+     * and that do not already have a speculative copy running. Jobs still waiting in a node's local queue are ignored.
+     * The expected duration is the 95th percentile predicted from previous completions of the same class of job
+     *
+     * @param factor The multiple of the job duration after which a job is considered to be a straggler
+     *
+     * @return The straggling jobs, in allocation order
+     */
+    public ArrayList<Job> getStragglers(double factor) {
+        ArrayList<Job> stragglers = new ArrayList<>();
+        long now = System.currentTimeMillis();
+
+        for (Map.Entry<Job, JobAlloc> jobDetails : jobs.entrySet()) {
+            JobAlloc jobAlloc = jobDetails.getValue();
+
+            // Treat jobs as lasting at least 1 second, so very short jobs aren't immediately considered stragglers
+            double expectedDuration = Math.max(DurationManager.getInstance().getPredictedDuration(jobDetails.getKey(), 0.95), 1000);
+
+            if (jobAlloc.getJobStatus() == JobStatus.ALLOCATED && jobAlloc.getSpeculativeNode() == null && jobAlloc.getStartTime() != 0 && now - jobAlloc.getStartTime() > expectedDuration * factor) {
+                stragglers.add(jobDetails.getKey());
+            }
+        }
+
+        return stragglers;
+    }
+
+    /**
+     * Get the time the job started running on its allocated node
+     *
+     * @param job The job to find the start time of
+     *
+     * @return The start time in milliseconds, 0 if the job has not started
+     */
+    public long getJobStartTime(Job job) {
+        return this.jobs.get(job).getStartTime();
+    }
+
+    /**
+     * Record that a speculative copy of the job has been sent to the supplied node
+     *
+     * @param job  The straggling job
+     * @param node The node running the speculative copy
+     */
+    public void setSpeculativeNode(Job job, Node node) {
+        this.jobs.get(job).setSpeculativeNode(node);
+    }
+
+    /**
+     * Get the node running a speculative copy of the job
+     *
+     * @param job The job to find the speculative node of
+     *
+     * @return The node running the speculative copy, or null if there is none
+     */
+    public Node getSpeculativeNode(Job job) {
+        return this.jobs.get(job).getSpeculativeNode();
+    }
+
+    /**
+     * Resolve a speculatively executed job once one of its copies has completed. The node that completed first becomes
+     * the allocated node and the speculative copy is cleared
+     *
+     * @param job         The job that has completed
+     * @param winningNode The node that completed the job first
+     *
+     * @return The node still running the losing copy which should be cancelled, or null if there is none
+     */
+    public Node resolveSpeculation(Job job, Node winningNode) {
+        JobAlloc jobAlloc = this.jobs.get(job);
+
+        if (jobAlloc.getSpeculativeNode() == null || winningNode == null) {
+            return null;
+        }
+
+        Node losingNode = winningNode.equals(jobAlloc.getSpeculativeNode()) ? jobAlloc.getNode() : jobAlloc.getSpeculativeNode();
+
+        jobAlloc.setNode(winningNode);
+        jobAlloc.setSpeculativeNode(null);
+
+        return losingNode;
+    }
+
     /**
      * Update the JobStatus of a job
      *
@@ -94,19 +558,112 @@ public class JobManager {
      * @param newStatus The new status of the job
      */
     public void updateJobStatus(Job job, JobStatus newStatus) {
-        this.jobs.get(job).setJobStatus(newStatus);
+        setJobStatus(job, this.jobs.get(job), newStatus);
     }
 
     /**
-     * Fetch the next unallocated job from the jobs LinkedHashMap.
+     * Update the JobStatus of a job, adding the job's resources to its user's usage as it is allocated and removing
+     * them once it is no longer allocated
+     *
+     * @param job       The job that has the JobStatus to be updated
+     * @param jobAlloc  The allocation information of the job
+     * @param newStatus The new status of the job
+     */
+    private void setJobStatus(Job job, JobAlloc jobAlloc, JobStatus newStatus) {
+        boolean wasAllocated = jobAlloc.getJobStatus() == JobStatus.ALLOCATED;
+        boolean isAllocated = newStatus == JobStatus.ALLOCATED;
+
+        if (wasAllocated != isAllocated) {
+            int sign = isAllocated ? 1 : -1;
+            int[] usage = userUsage.computeIfAbsent(job.getUser(), user -> new int[3]);
+
+            usage[0] += sign * job.getWeight();
+            usage[1] += sign * job.getMemory();
+            usage[2] += sign * job.getDisk();
+
+            // Users are only listed while they have jobs allocated
+            if (usage[0] == 0 && usage[1] == 0 && usage[2] == 0) {
+                userUsage.remove(job.getUser());
+            }
+        }
+
+        jobAlloc.setJobStatus(newStatus);
+    }
+
+    /**
+     * Fetch the heaviest unallocated job of the user with the lowest dominant share that can start straight away, the
+     * heaviest job being the one needing the largest share of any one resource of the cluster, and the earliest such job
+     * if several are as heavy. Jobs with a deadline are fetched first, earliest deadline first
+     *
+     * @return The heaviest unallocated job as a Job object, or null if there are no unallocated jobs
+     */
+    public Job getHeaviestNextJob() {
+        return getNextJob(HEAVIEST_ORDER);
+    }
+
+    /**
+     * Fetch the next unallocated job of the user with the lowest dominant share that can start straight away. Jobs
+     * with a deadline are fetched first, earliest deadline first, then the jobs without a deadline in the order they
+     * arrived
      *
      * @return The next unallocated job as a Job object
      */
     public Job getNextJob() {
-        // Iterate through the jobs LinkedHashMap to find the next job with status 'UNALLOCATED'
-        for (Map.Entry<Job, JobAlloc> jobDetails : jobs.entrySet()) {
-            if (jobDetails.getValue().getJobStatus() == JobStatus.UNALLOCATED) {
-                return jobDetails.getKey();
+        return getNextJob(URGENCY_ORDER);
+    }
+
+    /**
+     * Fetch the first unallocated job in allocation order which can start straight away on a node with enough free
+     * resources. If none of a user's jobs can start, the next user's jobs are tried, so one user's jobs waiting for
+     * resources never hold up the rest. If no job can start, the first job is fetched so it can queue or be reserved
+     *
+     * @param order The order of each user's jobs
+     *
+     * @return The next unallocated job as a Job object, or null if there are no unallocated jobs
+     */
+    private Job getNextJob(Comparator<Job> order) {
+        ArrayList<Job> unallocatedJobs = getUnallocatedJobs(order);
+
+        // Jobs with the same requirements fit on the same nodes, so each set of requirements is only checked once
+        HashMap<String, Boolean> canStart = new HashMap<>();
+
+        for (Job job : unallocatedJobs) {
+            if (canStart.computeIfAbsent(getRequirementsKey(job), key -> NodeManager.getInstance().getFreeNode(job) != null)) {
+                return job;
+            }
+        }
+
+        return unallocatedJobs.isEmpty() ? null : unallocatedJobs.get(0);
+    }
+
+    /**
+     * Fetch the first unallocated job, in the order getNextJob would allocate them, which can start straight away
+     * without delaying the job holding the reservation. Following EASY backfilling, a job can be backfilled if it is
+     * predicted to complete before the reservation time, or if it only uses resources the reserved job won't need then
+     *
+     * @param reservedJob     The job holding the reservation
+     * @param reservationTime The time the reserved job is predicted to be able to start, in milliseconds
+     * @param spareCopies     How many more copies of the reserved job could start at the reservation time than it needs
+     *
+     * @return The job to backfill, or null if no job can start without delaying the reserved job
+     */
+    public Job getBackfillJob(Job reservedJob, long reservationTime, int spareCopies) {
+        long now = System.currentTimeMillis();
+
+        for (Job job : getUnallocatedJobs(URGENCY_ORDER)) {
+            if (job == reservedJob || job.getGang() > 1) {
+                continue;
+            }
+
+            Node freeNode = NodeManager.getInstance().getFreeNode(job);
+
+            if (freeNode == null) {
+                continue;
+            }
+
+            // A job still running at the reservation time must not take more of the resources than the reserved job can spare
+            if (now + DurationManager.getInstance().getPredictedDuration(job, 0.95) / freeNode.getSpeedFactor() <= reservationTime || NodeManager.getInstance().countCopiesDisplacedAt(reservedJob, job, freeNode, reservationTime) <= spareCopies) {
+                return job;
             }
         }
 
@@ -114,20 +671,300 @@ public class JobManager {
     }
 
     /**
-     * Get the number of jobs that are currently allocated and in progress with a Node
+     * Fetch every unallocated job a connected node can run, in allocation order. Users are ordered by ascending dominant
+     * share, the user waiting longest first if several share the same, then each user's jobs are ordered as supplied,
+     * jobs ordered equally staying in the order they arrived
      *
-     * @param node The node whose active jobs to tally
+     * @param order The order of each user's jobs
      *
-     * @return The number of jobs allocated to the specified Node
+     * @return The unallocated jobs in allocation order
      */
-    public int getAmountOfActiveNodeJobs(Node node) {
-        int amountOfJobs = 0;
+    private ArrayList<Job> getUnallocatedJobs(Comparator<Job> order) {
+        LinkedHashMap<String, ArrayList<Job>> userJobs = new LinkedHashMap<>();
+
+        // Jobs with the same requirements are eligible for the same nodes, so each set of requirements is only checked once
+        HashMap<String, Boolean> eligible = new HashMap<>();
+
+        for (Map.Entry<Job, JobAlloc> jobDetails : jobs.entrySet()) {
+            Job job = jobDetails.getKey();
+
+            if (jobDetails.getValue().getJobStatus() == JobStatus.UNALLOCATED && eligible.computeIfAbsent(getRequirementsKey(job), key -> NodeManager.getInstance().hasEligibleNode(job))) {
+                userJobs.computeIfAbsent(job.getUser(), user -> new ArrayList<>()).add(job);
+            }
+        }
+
+        // A user's dominant share is the largest share of any one resource (slots, memory or scratch disk) claimed by
+        // their allocated jobs, including those waiting in a node's local queue, following Dominant Resource Fairness
+        HashMap<String, Double> shares = new HashMap<>();
+
+        for (String user : userJobs.keySet()) {
+            int[] usage = userUsage.getOrDefault(user, new int[3]);
+
+            shares.put(user, calcDominantShare(usage[0], usage[1], usage[2]));
+        }
+
+        // The sorts are stable, so users and jobs ordered equally stay in the order they arrived
+        ArrayList<String> users = new ArrayList<>(userJobs.keySet());
+        users.sort(new Comparator<String>() {
+            @Override
+            public int compare(String user1, String user2) {
+                return Double.compare(shares.get(user1), shares.get(user2));
+            }
+        });
+
+        ArrayList<Job> unallocatedJobs = new ArrayList<>();
+
+        for (String user : users) {
+            ArrayList<Job> jobsOfUser = userJobs.get(user);
+            jobsOfUser.sort(order);
+
+            unallocatedJobs.addAll(jobsOfUser);
+        }
+
+        return unallocatedJobs;
+    }
+
+    /**
+     * Describe the resources and labels a job requires, which decide which nodes the job can run on
+     *
+     * @param job The job to describe
+     *
+     * @return The requirements of the job, the same for jobs which can run on the same nodes
+     */
+    private String getRequirementsKey(Job job) {
+        return job.getWeight() + "," + job.getMemory() + "," + job.getDisk() + "," + job.getSelector();
+    }
+
+    /**
+     * Check whether a job should be allocated before another following earliest deadline first, jobs with a deadline
+     * being more urgent than those without
+     *
+     * @param job   The job to check
+     * @param other The job to compare against
+     *
+     * @return Whether or not the job has an earlier deadline than the other job
+     */
+    private boolean isMoreUrgent(Job job, Job other) {
+        return job.getDeadline() != 0 && (other.getDeadline() == 0 || job.getDeadline() < other.getDeadline());
+    }
+
+    /**
+     * Fetch the unallocated jobs which can no longer complete before their deadline, even if they were allocated to the
+     * fastest eligible node straight away
+     *
+     * @return The unallocated jobs that will miss their deadline
+     */
+    public ArrayList<Job> getUnmeetableJobs() {
+        ArrayList<Job> unmeetableJobs = new ArrayList<>();
+        long now = System.currentTimeMillis();
+
+        for (Map.Entry<Job, JobAlloc> jobDetails : jobs.entrySet()) {
+            Job job = jobDetails.getKey();
+
+            if (jobDetails.getValue().getJobStatus() == JobStatus.UNALLOCATED && job.getDeadline() != 0) {
+                // Without an eligible node to measure against, assume the job runs as fast as a typical node
+                double speedFactor = NodeManager.getInstance().getFastestSpeedFactor(job);
+                double predictedDuration = DurationManager.getInstance().getPredictedDuration(job, 0.5) / (speedFactor > 0 ? speedFactor : 1.0);
+
+                if (now + predictedDuration > job.getDeadline()) {
+                    unmeetableJobs.add(job);
+                }
+            }
+        }
+
+        return unmeetableJobs;
+    }
+
+    /**
+     * Reject a job which can no longer complete before its deadline, so that it is never allocated
+     *
+     * @param job The job to reject
+     */
+    public void rejectJob(Job job) {
+        updateJobStatus(job, JobStatus.REJECTED);
+
+        deadlinesRejected++;
+    }
+
+    /**
+     * Record whether a job with a deadline completed before its deadline
+     *
+     * @param job The job that has completed
+     */
+    public void recordDeadline(Job job) {
+        if (job.getDeadline() == 0) {
+            return;
+        }
+
+        if (System.currentTimeMillis() <= job.getDeadline()) {
+            deadlinesMet++;
+        } else {
+            deadlinesMissed++;
+        }
+    }
+
+    /**
+     * @return The counts of deadlines met, missed and rejected formatted as a string
+     */
+    public String deadlinesToString() {
+        return "Met: " + deadlinesMet + ", Missed: " + deadlinesMissed + ", Rejected: " + deadlinesRejected;
+    }
+
+    /**
+     * Used to display the resources allocated to each user and their dominant share in a nice, readable format
+     *
+     * @return The formatted string
+     */
+    public String sharesToString() {
+        LinkedHashMap<String, int[]> allocated = userUsage;
+        StringBuilder sb = new StringBuilder();
+
+        // Iterate through the users, appending the allocated resources and dominant share of each
+        int i = 0;
+        for (Map.Entry<String, int[]> userDetails : allocated.entrySet()) {
+            i++;
+
+            int[] usage = userDetails.getValue();
+
+            sb.append("User: ").append(userDetails.getKey());
+            sb.append(", Slots: ").append(usage[0]);
+            sb.append(", Memory: ").append(usage[1]).append("MB");
+            sb.append(", Disk: ").append(usage[2]).append("MB");
+            sb.append(", Dominant Share: ").append(String.format("%.2f", calcDominantShare(usage[0], usage[1], usage[2]) * 100)).append("%");
+
+            // If we haven't reached the end of the list, add a new line
+            if (i != allocated.size())
+                sb.append("\n");
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Calculate the largest share of any one resource of the cluster that the supplied amounts make up. Resources
+     * not limited by any node are ignored
+     *
+     * @param slots  The amount of capacity slots
+     * @param memory The amount of memory in MB
+     * @param disk   The amount of scratch disk in MB
+     *
+     * @return The dominant share, between 0 and 1 if the amounts fit within the cluster
+     */
+    private double calcDominantShare(int slots, int memory, int disk) {
+        NodeManager nodeManager = NodeManager.getInstance();
+        double share = 0;
+
+        if (nodeManager.getTotalCapacity() > 0) {
+            share = Math.max(share, slots / (double) nodeManager.getTotalCapacity());
+        }
+
+        if (nodeManager.getTotalMemory() > 0) {
+            share = Math.max(share, memory / (double) nodeManager.getTotalMemory());
+        }
+
+        if (nodeManager.getTotalDisk() > 0) {
+            share = Math.max(share, disk / (double) nodeManager.getTotalDisk());
+        }
+
+        return share;
+    }
+
+    /**
+     * Get the number of capacity slots occupied by the jobs that are currently allocated to a Node, whether running or
+     * waiting in its local queue
+     *
+     * @param node The node whose allocated slots to tally
+     *
+     * @return The number of slots allocated on the specified Node
+     */
+    public int getNodeSlotUsage(Node node) {
+        return getNodeUsage(node, node::getSlotWeight);
+    }
+
+    /**
+     * Get the memory required by the jobs that are currently allocated to a Node, whether running or waiting in its
+     * local queue
+     *
+     * @param node The node whose allocated memory to tally
+     *
+     * @return The memory allocated on the specified Node in MB
+     */
+    public int getNodeMemoryUsage(Node node) {
+        return getNodeUsage(node, Job::getMemory);
+    }
+
+    /**
+     * Get the scratch disk required by the jobs that are currently allocated to a Node, whether running or waiting in
+     * its local queue
+     *
+     * @param node The node whose allocated scratch disk to tally
+     *
+     * @return The scratch disk allocated on the specified Node in MB
+     */
+    public int getNodeDiskUsage(Node node) {
+        return getNodeUsage(node, Job::getDisk);
+    }
+
+    /**
+     * Tally a resource required by the jobs that are currently allocated to a Node
+     *
+     * @param node     The node whose allocated resource to tally
+     * @param resource The amount of the resource required by a job
+     *
+     * @return The amount of the resource allocated on the specified Node
+     */
+    private int getNodeUsage(Node node, ToIntFunction<Job> resource) {
+        int usage = 0;
 
         // Iterate through the jobs LinkedHashMap and see if the job had an allocated node, and if so, if that
         // node is the same as the supplied node
         for (Map.Entry<Job, JobAlloc> jobDetails : jobs.entrySet()) {
-            // Check: Node is not null && parameter node == iteration node && JobStatus of iteration job is ALLOCATED
-            if (jobDetails.getValue().getNode() != null && jobDetails.getValue().getNode().equals(node) && jobDetails.getValue().getJobStatus() == JobStatus.ALLOCATED) {
+            // Check: (parameter node == iteration node || parameter node == speculative node) && JobStatus of iteration job is ALLOCATED
+            if ((node.equals(jobDetails.getValue().getNode()) || node.equals(jobDetails.getValue().getSpeculativeNode())) && jobDetails.getValue().getJobStatus() == JobStatus.ALLOCATED) {
+                usage += resource.applyAsInt(jobDetails.getKey());
+            }
+        }
+
+        return usage;
+    }
+
+    /**
+     * Tally a resource required by the jobs currently running on a Node, excluding those waiting in its local queue. A
+     * speculative copy always counts as running, as it is only sent to a node with enough free resources
+     *
+     * @param node     The node whose running jobs to tally
+     * @param resource The amount of the resource required by a job
+     *
+     * @return The amount of the resource in use on the specified Node
+     */
+    private int getStartedNodeUsage(Node node, ToIntFunction<Job> resource) {
+        int usage = 0;
+
+        for (Map.Entry<Job, JobAlloc> jobDetails : jobs.entrySet()) {
+            JobAlloc jobAlloc = jobDetails.getValue();
+
+            if (jobAlloc.getJobStatus() == JobStatus.ALLOCATED && ((node.equals(jobAlloc.getNode()) && jobAlloc.getStartTime() != 0) || node.equals(jobAlloc.getSpeculativeNode()))) {
+                usage += resource.applyAsInt(jobDetails.getKey());
+            }
+        }
+
+        return usage;
+    }
+
+    /**
+     * Get the number of jobs allocated to a Node that are waiting in its local queue to be started
+     *
+     * @param node The node whose queued jobs to tally
+     *
+     * @return The number of jobs queued on the specified Node
+     */
+    public int getQueuedNodeJobs(Node node) {
+        int amountOfJobs = 0;
+
+        for (Map.Entry<Job, JobAlloc> jobDetails : jobs.entrySet()) {
+            JobAlloc jobAlloc = jobDetails.getValue();
+
+            if (jobAlloc.getJobStatus() == JobStatus.ALLOCATED && node.equals(jobAlloc.getNode()) && jobAlloc.getStartTime() == 0) {
                 amountOfJobs++;
             }
         }
@@ -135,6 +972,65 @@ public class JobManager {
         return amountOfJobs;
     }
 
+    /**
+     * Predict the amount of work still to be done by the specified node, based on the declared durations of the jobs
+     * allocated to it, how long they have been running, how many slots they occupy and the estimated speed of the node
+     *
+     * @param node The node whose remaining work to predict
+     *
+     * @return The predicted remaining work, in slot milliseconds
+     */
+    public double getRemainingNodeWork(Node node) {
+        double remainingWork = 0;
+        long now = System.currentTimeMillis();
+
+        for (Map.Entry<Job, JobAlloc> jobDetails : jobs.entrySet()) {
+            JobAlloc jobAlloc = jobDetails.getValue();
+
+            if ((node.equals(jobAlloc.getNode()) || node.equals(jobAlloc.getSpeculativeNode())) && jobAlloc.getJobStatus() == JobStatus.ALLOCATED) {
+                double runtime = DurationManager.getInstance().getPredictedDuration(jobDetails.getKey(), 0.5) / node.getSpeedFactor();
+
+                // Jobs that have started only have the rest of their runtime left, queued jobs have all of it
+                remainingWork += ((jobAlloc.getStartTime() != 0) ? Math.max(0, jobAlloc.getStartTime() + runtime - now) : runtime) * node.getSlotWeight(jobDetails.getKey());
+            }
+        }
+
+        return remainingWork;
+    }
+
+    /**
+     * Predict when each job allocated to the specified node will complete and release its resources. A job that has
+     * started completes once its predicted runtime has passed, whereas a queued job is assumed to hold its resources
+     * until all of the work allocated to the node is complete
+     *
+     * @param node The node whose jobs to predict the release times of
+     *
+     * @return The predicted release time of each job allocated to the node, in milliseconds
+     */
+    public LinkedHashMap<Job, Long> getPredictedReleaseTimes(Node node) {
+        LinkedHashMap<Job, Long> releaseTimes = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        long queueReleaseTime = now + (long) (getRemainingNodeWork(node) / node.getCapacity());
+
+        for (Map.Entry<Job, JobAlloc> jobDetails : jobs.entrySet()) {
+            JobAlloc jobAlloc = jobDetails.getValue();
+
+            if (jobAlloc.getJobStatus() != JobStatus.ALLOCATED) {
+                continue;
+            }
+
+            long runtime = (long) (DurationManager.getInstance().getPredictedDuration(jobDetails.getKey(), 0.5) / node.getSpeedFactor());
+
+            if (node.equals(jobAlloc.getSpeculativeNode())) {
+                releaseTimes.put(jobDetails.getKey(), now + runtime);
+            } else if (node.equals(jobAlloc.getNode())) {
+                releaseTimes.put(jobDetails.getKey(), (jobAlloc.getStartTime() != 0) ? Math.max(now, jobAlloc.getStartTime() + runtime) : queueReleaseTime);
+            }
+        }
+
+        return releaseTimes;
+    }
+
     /**
      * Find allocated node given a job name
      *
@@ -143,13 +1039,9 @@ public class JobManager {
      * @return The allocated node, or null if not found
      */
     public Node getJobNode(String jobName) {
-        for (Map.Entry<Job, JobAlloc> jobDetails : jobs.entrySet()) {
-            if (jobDetails.getKey().getName().equalsIgnoreCase(jobName)) {
-                return jobDetails.getValue().getNode();
-            }
-        }
+        Job job = getByName(jobName);
 
-        return null;
+        return job != null ? jobs.get(job).getNode() : null;
     }
 
     /**
@@ -160,13 +1052,7 @@ public class JobManager {
      * @return The job object matching the name, or null if not found
      */
     public Job getByName(String jobName) {
-        for (Map.Entry<Job, JobAlloc> jobDetails : jobs.entrySet()) {
-            if (jobDetails.getKey().getName().equalsIgnoreCase(jobName)) {
-                return jobDetails.getKey();
-            }
-        }
-
-        return null;
+        return jobName != null ? jobNames.get(jobName.toLowerCase()) : null;
     }
 
     /**
@@ -179,17 +1065,14 @@ public class JobManager {
     public String jobToString(String jobName) {
         StringBuilder sb = new StringBuilder();
 
-        // Iterate through the jobs LinkedHashMap, until we find the job matching the supplied name, once found
-        // append all information to a string to return to caller
-        for (Map.Entry<Job, JobAlloc> jobDetails : jobs.entrySet()) {
-            if (jobDetails.getKey().getName().equals(jobName)) {
-                sb.append(jobDetails.getKey().toString());
-                sb.append(" --- ");
-                sb.append("Allocation Information: ");
-                sb.append(jobDetails.getValue().toString());
+        // Find the job matching the supplied name, and append all information to a string to return to caller
+        Job job = getByName(jobName);
 
-                break;
-            }
+        if (job != null) {
+            sb.append(job.toString());
+            sb.append(" --- ");
+            sb.append("Allocation Information: ");
+            sb.append(jobs.get(job).toString());
         }
 
         return sb.toString();
@@ -203,13 +1086,9 @@ public class JobManager {
      * @return The JobStatus of the supplied job, null if job is not found
      */
     public JobStatus getJobStatus(Job job) {
-        for (Map.Entry<Job, JobAlloc> jobDetails : jobs.entrySet()) {
-            if (jobDetails.getKey().equals(job)) {
-                return jobDetails.getValue().getJobStatus();
-            }
-        }
+        JobAlloc jobAlloc = jobs.get(job);
 
-        return null;
+        return jobAlloc != null ? jobAlloc.getJobStatus() : null;
     }
 
     /**
@@ -1,9 +1,12 @@
 package io.grimlock257.dnaos.loadbalancer.managers;
 
 import io.grimlock257.dnaos.loadbalancer.AllocationMethod;
+import io.grimlock257.dnaos.loadbalancer.job.Job;
+import io.grimlock257.dnaos.loadbalancer.job.LabelSelector;
 import io.grimlock257.dnaos.loadbalancer.message.MessageTypeOut;
 import io.grimlock257.dnaos.loadbalancer.node.Node;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -29,11 +32,51 @@ public class NodeManager {
     // Maximum amount of allowed strikes before removing the node
     private final int MAXIMUM_STRIKES = 3;
 
+    // How many jobs beyond its capacity a node may hold in its local queue once every node is fully utilised
+    private final int NODE_QUEUE_DEPTH = 2;
+
+    // How long to wait for a reply to a STEAL_JOB_REQUEST before allowing the nodes involved to steal again
+    private final int STEAL_REQUEST_TIMEOUT = 5 * 1000;
+
+    // Stores the time a steal was requested for each node involved in an outstanding STEAL_JOB_REQUEST
+    private HashMap<Node, Long> pendingSteals;
+
+    // Inverted index from each label to the nodes that have it, in registration order
+    private HashMap<String, LinkedHashSet<Node>> labelIndex;
+
+    // How many points each node is given on the consistent hashing ring, more points spread the keys more evenly
+    private final int VIRTUAL_NODES = 100;
+
+    // Consistent hashing ring mapping the hash of each point to the node that owns it
+    private TreeMap<Long, Node> hashRing;
+
+    // How far above its fair share of the load a node may be loaded by consistent hashing
+    private double loadBound = 1.25;
+
+    // Orders nodes by ascending workload then descending capacity weighted by benchmark score
+    private final Comparator<Node> WEIGHTED_ORDER = new Comparator<Node>() {
+        @Override
+        public int compare(Node node1, Node node2) {
+            double usageDifference = node1.calcUsage() - node2.calcUsage();
+
+            if (usageDifference < 0) {
+                return -1;
+            } else if (usageDifference > 0) {
+                return 1;
+            }
+
+            return Double.compare(node2.getWeightedCapacity(), node1.getWeightedCapacity());
+        }
+    };
+
     /**
      * NodeManager constructor
      */
     private NodeManager() {
         this.nodes = new LinkedHashMap<>();
+        this.pendingSteals = new HashMap<>();
+        this.labelIndex = new HashMap<>();
+        this.hashRing = new TreeMap<>();
     }
 
     /**
@@ -67,6 +110,13 @@ public class NodeManager {
         nodes.put(node, new Timer());
         resetIsAliveTimer(node.getName());
 
+        // Index the node under each of its labels
+        for (String label : node.getLabels()) {
+            labelIndex.computeIfAbsent(label, key -> new LinkedHashSet<>()).add(node);
+        }
+
+        addToHashRing(node);
+
         // Sort the nodes as new node
         if (allocationMethod == AllocationMethod.WEIGHTED) {
             sortNodes();
@@ -85,6 +135,9 @@ public class NodeManager {
         stopIsAliveTimer(node);
 
         nodes.remove(node);
+        pendingSteals.remove(node);
+        removeFromLabelIndex(node);
+        removeFromHashRing(node);
 
         // Sort the nodes as node removed
         if (allocationMethod == AllocationMethod.WEIGHTED) {
@@ -92,42 +145,580 @@ public class NodeManager {
         }
     }
 
+    /**
+     * Update the capacity of a node in place, keeping its allocated jobs. Any jobs queued on the node which can now run
+     * in the additional slots are marked as started, and the node's position in the weighted ordering is refreshed
+     *
+     * @param node     The node whose capacity has changed
+     * @param capacity The new capacity of the node
+     */
+    public void updateNodeCapacity(Node node, int capacity) {
+        node.setCapacity(capacity);
+
+        // The node starts as many of its queued jobs as fit in any slots it has gained
+        JobManager.getInstance().startQueuedJobs(node);
+
+        // Sort the nodes as the capacity of a node has changed
+        if (allocationMethod == AllocationMethod.WEIGHTED) {
+            sortNodes();
+        }
+    }
+
     /**
      * Retrieve the freest node, chosen based on the current allocation method
      *
+     * @param job The job that is being allocated
+     *
      * @return The freest Node
      */
-    public Node getFreestNode() {
+    public Node getFreestNode(Job job) {
         Node freestNode = null;
 
+        // Only consider the nodes that match the label selector of the job
+        Collection<Node> eligibleNodes = getEligibleNodes(job);
+
         // Select the freest node based on the allocation method
         switch (allocationMethod) {
             case WEIGHTED:
-                // Make sure the nodes are sorted
-                sortNodes();
-
-                // If the LinkedHashMap is empty, return null, otherwise make sure the first element in the list has a
-                // usage of less than 100%, is so return this node otherwise return null
-                if (!nodes.isEmpty()) {
-                    freestNode = (getNode(0).calcUsage() < 100) ? getNode(0) : null;
+                // Return the least utilised eligible node that has enough free slots for the job, otherwise return null
+                for (Node node : eligibleNodes) {
+                    if (node.canFit(job) && (freestNode == null || WEIGHTED_ORDER.compare(node, freestNode) < 0)) {
+                        freestNode = node;
+                    }
                 }
 
                 break;
             case NON_WEIGHTED:
-                // If the LinkedHashMap is empty, return null, otherwise make sure the nodeToUse element in the list has a
-                // usage of less than 100%, is so return this node otherwise return null
-                if (!nodes.isEmpty()) {
-                    freestNode = (getNode(nodeToUse).calcUsage() < 100) ? getNode(nodeToUse) : null;
+                // If there are no eligible nodes, return null, otherwise make sure the nodeToUse element in the eligible
+                // nodes has enough free slots for the job, is so return this node otherwise return null
+                if (!eligibleNodes.isEmpty()) {
+                    Node node = new ArrayList<>(eligibleNodes).get(nodeToUse % eligibleNodes.size());
+                    freestNode = node.canFit(job) ? node : null;
 
                     incrementNodeToUse();
                 }
 
+                break;
+            case PREDICTED_COMPLETION:
+                // Select the node predicted to complete the job soonest, based on the estimated speed of each node and
+                // the work already allocated to it, including nodes which would have to queue the job
+                double soonestCompletion = Double.MAX_VALUE;
+
+                for (Node node : eligibleNodes) {
+                    if (node.canFit(job) || (node.isLargeEnough(job) && node.getQueuedJobs() < NODE_QUEUE_DEPTH)) {
+                        double predictedCompletion = node.calcPredictedCompletion(job);
+
+                        if (predictedCompletion < soonestCompletion) {
+                            soonestCompletion = predictedCompletion;
+                            freestNode = node;
+                        }
+                    }
+                }
+
+                break;
+            case BEST_FIT:
+                // Select the node the job fits most tightly into, leaving the smallest fraction of each resource free
+                // behind so that larger gaps remain available for heavier jobs
+                double tightestFit = Double.MAX_VALUE;
+
+                for (Node node : eligibleNodes) {
+                    if (node.canFit(job)) {
+                        double leftover = node.calcLeftoverAfter(job);
+
+                        if (leftover < tightestFit || (leftover == tightestFit && node.getWeightedCapacity() > freestNode.getWeightedCapacity())) {
+                            tightestFit = leftover;
+                            freestNode = node;
+                        }
+                    }
+                }
+
+                break;
+            case FIRST_FIT_DECREASING:
+                // Select the first node in registration order with enough free slots for the job, the heaviest jobs
+                // are allocated first so they are packed before the lighter jobs fill the gaps
+                for (Node node : eligibleNodes) {
+                    if (node.canFit(job)) {
+                        freestNode = node;
+
+                        break;
+                    }
+                }
+
+                break;
+            case CONSISTENT_HASHING:
+                freestNode = getConsistentHashNode(job);
+
                 break;
         }
 
+        // Every eligible node is fully utilised, so queue the job on the node with the shortest local queue instead
+        if (freestNode == null) {
+            freestNode = getShortestQueueNode(job, eligibleNodes);
+        }
+
         return freestNode;
     }
 
+    /**
+     * Retrieve the node that owns the affinity key of the job (or its name if it has no key) on the consistent hashing
+     * ring, so jobs with the same key are routed to the same node. Following consistent hashing with bounded loads, if
+     * that node cannot fit the job, isn't eligible or would be loaded beyond the load bound times its fair share of
+     * the total load, the ring is walked clockwise to the next node that can take the job
+     *
+     * @param job The job that is being allocated
+     *
+     * @return The node to allocate the job to, or null if no eligible node can take the job
+     */
+    private Node getConsistentHashNode(Job job) {
+        if (hashRing.isEmpty()) {
+            return null;
+        }
+
+        // The fair share of each node is proportional to its capacity, including the job being allocated
+        int totalUsage = 0;
+        for (Node node : nodes.keySet()) {
+            totalUsage += JobManager.getInstance().getNodeSlotUsage(node);
+        }
+
+        double loadPerSlot = (totalUsage + job.getWeight()) / (double) getTotalCapacity();
+
+        // Walk the ring clockwise from the hash of the key, wrapping around to the start, checking each node once
+        long keyHash = hash(job.getKey() != null ? job.getKey() : job.getName());
+        HashSet<Node> checkedNodes = new HashSet<>();
+
+        for (Collection<Node> ringSection : Arrays.asList(hashRing.tailMap(keyHash).values(), hashRing.headMap(keyHash).values())) {
+            for (Node node : ringSection) {
+                if (checkedNodes.add(node)) {
+                    double loadLimit = Math.ceil(loadBound * loadPerSlot * node.getCapacity());
+
+                    if (node.matchesSelector(job) && node.canFit(job) && JobManager.getInstance().getNodeSlotUsage(node) + node.getSlotWeight(job) <= loadLimit) {
+                        return node;
+                    }
+
+                    if (checkedNodes.size() == nodes.size()) {
+                        return null;
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Place the virtual nodes of a node on the consistent hashing ring. Only the keys falling between the new points
+     * and their predecessors move to the new node, every other key stays where it was
+     *
+     * @param node The node to add to the ring
+     */
+    private void addToHashRing(Node node) {
+        for (int i = 0; i < VIRTUAL_NODES; i++) {
+            hashRing.putIfAbsent(hash(node.getName() + "#" + i), node);
+        }
+    }
+
+    /**
+     * Remove the virtual nodes of a node from the consistent hashing ring, only the keys it owned move to other nodes
+     *
+     * @param node The node to remove from the ring
+     */
+    private void removeFromHashRing(Node node) {
+        hashRing.values().removeIf(ringNode -> ringNode.equals(node));
+    }
+
+    /**
+     * Hash a string onto the consistent hashing ring using 64-bit FNV-1a followed by a final mix of the bits, so
+     * similar strings (such as the virtual node names) are spread evenly around the ring
+     *
+     * @param value The string to hash
+     *
+     * @return The position of the string on the ring
+     */
+    private long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= (hash >>> 33);
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= (hash >>> 33);
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= (hash >>> 33);
+
+        return hash;
+    }
+
+    /**
+     * Retrieve the nodes that match the label selector of the job. When the selector requires labels, the candidates
+     * are taken from the inverted label index, starting with the label held by the fewest nodes, so only nodes that
+     * could be eligible are checked rather than every node
+     *
+     * @param job The job to find the eligible nodes for
+     *
+     * @return The eligible nodes, in registration order (or weighted order if every node is eligible)
+     */
+    private Collection<Node> getEligibleNodes(Job job) {
+        LabelSelector selector = job.getSelector();
+
+        if (selector == null) {
+            return nodes.keySet();
+        }
+
+        // Without a required label any node could be eligible, so only the forbidden labels narrow the nodes down
+        Collection<Node> candidates = nodes.keySet();
+
+        for (String label : selector.getRequiredLabels()) {
+            Collection<Node> labelledNodes = labelIndex.getOrDefault(label, new LinkedHashSet<>());
+
+            if (candidates == nodes.keySet() || labelledNodes.size() < candidates.size()) {
+                candidates = labelledNodes;
+            }
+        }
+
+        ArrayList<Node> eligibleNodes = new ArrayList<>();
+
+        for (Node node : candidates) {
+            if (node.matchesSelector(job)) {
+                eligibleNodes.add(node);
+            }
+        }
+
+        return eligibleNodes;
+    }
+
+    /**
+     * Remove a node from the inverted label index, removing any labels no longer held by a node
+     *
+     * @param node The node to remove
+     */
+    private void removeFromLabelIndex(Node node) {
+        for (String label : node.getLabels()) {
+            LinkedHashSet<Node> labelledNodes = labelIndex.get(label);
+
+            if (labelledNodes != null) {
+                labelledNodes.remove(node);
+
+                if (labelledNodes.isEmpty()) {
+                    labelIndex.remove(label);
+                }
+            }
+        }
+    }
+
+    /**
+     * Retrieve the node with the shortest local queue that still has room in its queue and is large enough to run the
+     * job once its queue clears, preferring the node with the greater weighted capacity when queue lengths are equal
+     *
+     * @param job           The job that is being allocated
+     * @param eligibleNodes The nodes that match the label selector of the job
+     *
+     * @return The node with the shortest queue, or null if every suitable queue is full
+     */
+    private Node getShortestQueueNode(Job job, Collection<Node> eligibleNodes) {
+        Node shortestQueueNode = null;
+
+        for (Node node : eligibleNodes) {
+            int queuedJobs = node.getQueuedJobs();
+
+            if (queuedJobs < NODE_QUEUE_DEPTH && node.isLargeEnough(job) && (shortestQueueNode == null || queuedJobs < shortestQueueNode.getQueuedJobs() || (queuedJobs == shortestQueueNode.getQueuedJobs() && node.getWeightedCapacity() > shortestQueueNode.getWeightedCapacity()))) {
+                shortestQueueNode = node;
+            }
+        }
+
+        return shortestQueueNode;
+    }
+
+    /**
+     * Retrieve the least utilised node with enough free slots to run a speculative copy of a straggling job, excluding
+     * the node already running the job. The copy is never queued, as it needs to start straight away to be of any use
+     *
+     * @param job          The straggling job
+     * @param excludedNode The node already running the job
+     *
+     * @return The node to run the speculative copy on, or null if no other node has enough free slots
+     */
+    public Node getSpeculativeNode(Job job, Node excludedNode) {
+        Node speculativeNode = null;
+
+        for (Node node : getEligibleNodes(job)) {
+            if (!node.equals(excludedNode) && node.canFit(job) && (speculativeNode == null || node.calcUsage() < speculativeNode.calcUsage())) {
+                speculativeNode = node;
+            }
+        }
+
+        return speculativeNode;
+    }
+
+    /**
+     * Retrieve the least utilised node that has a free slot and is not already involved in a steal, for use as the
+     * thief when stealing queued jobs from a backed up node
+     *
+     * @return The idle node, or null if no node is idle
+     */
+    public Node getIdleNode() {
+        Node idleNode = null;
+
+        for (Node node : nodes.keySet()) {
+            if (node.calcUsage() < 100 && !isStealPending(node) && (idleNode == null || node.calcUsage() < idleNode.calcUsage())) {
+                idleNode = node;
+            }
+        }
+
+        return idleNode;
+    }
+
+    /**
+     * Retrieve the node with the most jobs waiting in its local queue that is not already involved in a steal, for
+     * use as the victim when stealing queued jobs
+     *
+     * @return The most backed up node, or null if no node has queued jobs
+     */
+    public Node getMostBackloggedNode() {
+        Node backloggedNode = null;
+
+        for (Node node : nodes.keySet()) {
+            if (node.getQueuedJobs() > 0 && !isStealPending(node) && (backloggedNode == null || node.getQueuedJobs() > backloggedNode.getQueuedJobs())) {
+                backloggedNode = node;
+            }
+        }
+
+        return backloggedNode;
+    }
+
+    /**
+     * Record that a STEAL_JOB_REQUEST has been issued, so neither node is involved in another steal until it is answered
+     *
+     * @param thiefNode  The idle node that will receive the stolen job
+     * @param victimNode The backed up node that has been asked to give up a queued job
+     */
+    public void beginSteal(Node thiefNode, Node victimNode) {
+        long now = System.currentTimeMillis();
+
+        pendingSteals.put(thiefNode, now);
+        pendingSteals.put(victimNode, now);
+    }
+
+    /**
+     * Record that a STEAL_JOB_REQUEST has been answered, allowing both nodes to take part in steals again
+     *
+     * @param thiefNode  The idle node that requested the steal, may be null if it has since been removed
+     * @param victimNode The backed up node that was asked to give up a queued job, may be null if it has since been removed
+     */
+    public void endSteal(Node thiefNode, Node victimNode) {
+        pendingSteals.remove(thiefNode);
+        pendingSteals.remove(victimNode);
+    }
+
+    /**
+     * Check whether the node is involved in an outstanding steal, expiring steals that were never answered
+     *
+     * @param node The node to check
+     *
+     * @return Whether or not a steal involving the node is still outstanding
+     */
+    private boolean isStealPending(Node node) {
+        Long requestTime = pendingSteals.get(node);
+
+        if (requestTime != null && System.currentTimeMillis() - requestTime > STEAL_REQUEST_TIMEOUT) {
+            pendingSteals.remove(node);
+
+            return false;
+        }
+
+        return requestTime != null;
+    }
+
+    /**
+     * Check whether any node matching the label selector of the job is large enough to ever run the job
+     *
+     * @param job The job to check
+     *
+     * @return Whether or not an eligible node large enough for the job is connected
+     */
+    public boolean hasEligibleNode(Job job) {
+        for (Node node : getEligibleNodes(job)) {
+            if (node.isLargeEnough(job)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Retrieve the estimated speed of the fastest node matching the label selector of the job that is large enough to
+     * ever run the job
+     *
+     * @param job The job to check
+     *
+     * @return The speed factor of the fastest eligible node, or 0 if no eligible node is connected
+     */
+    public double getFastestSpeedFactor(Job job) {
+        double fastestSpeedFactor = 0;
+
+        for (Node node : getEligibleNodes(job)) {
+            if (node.isLargeEnough(job)) {
+                fastestSpeedFactor = Math.max(fastestSpeedFactor, node.getSpeedFactor());
+            }
+        }
+
+        return fastestSpeedFactor;
+    }
+
+    /**
+     * Count how many copies of the job could start straight away across the free resources of the eligible nodes, to
+     * decide how many chunks to split the job into or whether a gang job can start
+     *
+     * @param job The job to check
+     *
+     * @return The amount of copies of the job that would fit
+     */
+    public int getFreeChunkCount(Job job) {
+        int chunkCount = 0;
+
+        for (Node node : getEligibleNodes(job)) {
+            chunkCount += node.countFreeCopies(job);
+        }
+
+        return chunkCount;
+    }
+
+    /**
+     * Predict the earliest time at which the supplied amount of copies of the job could all start at once across the
+     * eligible nodes, based on when the jobs allocated to each node are predicted to release their resources
+     *
+     * @param job    The job to check
+     * @param copies The amount of copies which need to start together
+     *
+     * @return The predicted time in milliseconds, or Long.MAX_VALUE if the connected nodes could never fit enough copies
+     */
+    public long calcReservationTime(Job job, int copies) {
+        HashMap<Node, LinkedHashMap<Job, Long>> releaseTimes = new HashMap<>();
+        TreeSet<Long> times = new TreeSet<>();
+
+        times.add(System.currentTimeMillis());
+
+        for (Node node : getEligibleNodes(job)) {
+            if (node.isLargeEnough(job)) {
+                LinkedHashMap<Job, Long> nodeReleaseTimes = JobManager.getInstance().getPredictedReleaseTimes(node);
+
+                releaseTimes.put(node, nodeReleaseTimes);
+                times.addAll(nodeReleaseTimes.values());
+            }
+        }
+
+        // Resources are only ever released as jobs complete, so only those points in time need checking
+        for (long time : times) {
+            int fittingCopies = 0;
+
+            for (Map.Entry<Node, LinkedHashMap<Job, Long>> nodeReleaseTimes : releaseTimes.entrySet()) {
+                fittingCopies += nodeReleaseTimes.getKey().countCopiesAt(job, nodeReleaseTimes.getValue(), time);
+            }
+
+            if (fittingCopies >= copies) {
+                return time;
+            }
+        }
+
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Count how many copies of the job could start at a point in the future across the eligible nodes, once the jobs
+     * predicted to have completed by then have released their resources
+     *
+     * @param job  The job to check
+     * @param time The point in the future to check, in milliseconds
+     *
+     * @return The amount of copies of the job that would fit
+     */
+    public int countCopiesAt(Job job, long time) {
+        int copies = 0;
+
+        for (Node node : getEligibleNodes(job)) {
+            if (node.isLargeEnough(job)) {
+                copies += node.countCopiesAt(job, JobManager.getInstance().getPredictedReleaseTimes(node), time);
+            }
+        }
+
+        return copies;
+    }
+
+    /**
+     * Count how many fewer copies of the job could start at a point in the future if another job were started on the
+     * supplied node now and still running then
+     *
+     * @param job        The job to check
+     * @param runningJob The job that would be started now
+     * @param node       The node the other job would be started on
+     * @param time       The point in the future to check, in milliseconds
+     *
+     * @return The amount of copies of the job displaced, 0 if the node can never run the job
+     */
+    public int countCopiesDisplacedAt(Job job, Job runningJob, Node node, long time) {
+        if (!getEligibleNodes(job).contains(node) || !node.isLargeEnough(job)) {
+            return 0;
+        }
+
+        LinkedHashMap<Job, Long> releaseTimes = JobManager.getInstance().getPredictedReleaseTimes(node);
+
+        return node.countCopiesAt(job, releaseTimes, time) - node.countCopiesAt(job, releaseTimes, time, runningJob);
+    }
+
+    /**
+     * Retrieve the least utilised eligible node with enough free resources to start the job straight away, for jobs
+     * which must not wait in a node's local queue
+     *
+     * @param job The job to allocate
+     *
+     * @return The node to run the job on, or null if no eligible node has enough free resources
+     */
+    public Node getFreeNode(Job job) {
+        return getSpeculativeNode(job, null);
+    }
+
+    /**
+     * @return The total capacity slots of all nodes
+     */
+    public int getTotalCapacity() {
+        int totalCapacity = 0;
+
+        for (Node node : nodes.keySet()) {
+            totalCapacity += node.getCapacity();
+        }
+
+        return totalCapacity;
+    }
+
+    /**
+     * @return The total memory of all nodes which limit their memory, in MB
+     */
+    public int getTotalMemory() {
+        int totalMemory = 0;
+
+        for (Node node : nodes.keySet()) {
+            totalMemory += node.getMemory();
+        }
+
+        return totalMemory;
+    }
+
+    /**
+     * @return The total scratch disk of all nodes which limit their scratch disk, in MB
+     */
+    public int getTotalDisk() {
+        int totalDisk = 0;
+
+        for (Node node : nodes.keySet()) {
+            totalDisk += node.getDisk();
+        }
+
+        return totalDisk;
+    }
+
     /**
      * Attempt to increment the nodeToUse variable to know which node to use next
      */
@@ -142,24 +733,14 @@ public class NodeManager {
     }
 
     /**
-     * Sort the nodes LinkedHashMap by ascending workload then descending capacity (for use with the Weighted Round-Robin)
+     * Sort the nodes LinkedHashMap by ascending workload then descending capacity weighted by benchmark score (for use
+     * with the Weighted Round-Robin)
      */
     private void sortNodes() {
         nodes = nodes.entrySet().stream().sorted(new Comparator<Map.Entry<Node, Timer>>() {
             @Override
             public int compare(Map.Entry<Node, Timer> entry1, Map.Entry<Node, Timer> entry2) {
-                Node node1 = entry1.getKey();
-                Node node2 = entry2.getKey();
-
-                double usageDifference = node1.calcUsage() - node2.calcUsage();
-
-                if (usageDifference < 0) {
-                    return -1;
-                } else if (usageDifference > 0) {
-                    return 1;
-                }
-
-                return node2.getCapacity() - node1.getCapacity();
+                return WEIGHTED_ORDER.compare(entry1.getKey(), entry2.getKey());
             }
         }).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (x, y) -> {
                     throw new AssertionError();
@@ -281,6 +862,8 @@ public class NodeManager {
 
             // Remove the node from the list
             itr.remove();
+            removeFromLabelIndex(node);
+            removeFromHashRing(node);
 
             // Deallocate jobs relating to the current node
             JobManager.getInstance().deallocateJobs(node);
@@ -348,6 +931,15 @@ public class NodeManager {
         return (Node) nodes.keySet().toArray()[index];
     }
 
+    /**
+     * Set how far above its fair share of the load a node may be loaded when allocating with consistent hashing
+     *
+     * @param loadBound The load bound, at least 1.0
+     */
+    public void setLoadBound(double loadBound) {
+        this.loadBound = loadBound;
+    }
+
     /**
      * Set the allocation method to use to the supplied value
      *
@@ -357,6 +949,29 @@ public class NodeManager {
         this.allocationMethod = allocationMethod;
     }
 
+    /**
+     * Used to display the speed estimation statistics of each node in a nice, readable format
+     *
+     * @return The formatted string
+     */
+    public String speedsToString() {
+        StringBuilder sb = new StringBuilder();
+
+        // Iterate through the nodes LinkedHashMap, appending the speed statistics of each node to the output
+        int i = 0;
+        for (Node node : nodes.keySet()) {
+            i++;
+
+            sb.append(node.speedToString());
+
+            // If we haven't reached the end of the list, add a new line
+            if (i != nodes.size())
+                sb.append("\n");
+        }
+
+        return sb.toString();
+    }
+
     /**
      * Used to display the nodes LinkedHashMap in a nice, readable format
      *
@@ -0,0 +1,229 @@
+package io.grimlock257.dnaos.loadbalancer.managers;
+
+import io.grimlock257.dnaos.loadbalancer.job.Job;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Result Cache Manager for Load Balancer project
+ * This class remembers which jobs have recently completed by the content of the job, so that identical work submitted
+ * again can be answered straight away, and keeps track of identical jobs submitted while the first is still in flight
+ * so that only one copy is run and every copy is completed with it
+ *
+ * Adam Watson
+ * Year 2 - Computer Systems Engineering
+ * Distributed Network Architecture & Operating Systems Module CW-2
+ */
+public class ResultCacheManager {
+    private static ResultCacheManager instance = null;
+
+    // Maximum amount of completed jobs to remember, the least recently used is forgotten when exceeded, 0 disables the cache
+    private int maximumEntries = 0;
+
+    // How long a completed job is remembered for, in milliseconds
+    private long timeToLive = 300_000;
+
+    // The time each remembered job completed, by content key
+    private LinkedHashMap<String, Long> completedJobs;
+
+    // The job being run for each content key, and the identical jobs waiting on it to complete
+    private HashMap<String, Job> inFlightJobs;
+    private HashMap<String, ArrayList<Job>> coalescedJobs;
+
+    private int hits;
+    private int coalesced;
+
+    /**
+     * ResultCacheManager constructor
+     */
+    private ResultCacheManager() {
+        // Access ordered so that the eldest entry is always the least recently used completed job
+        this.completedJobs = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > maximumEntries;
+            }
+        };
+
+        this.inFlightJobs = new HashMap<>();
+        this.coalescedJobs = new HashMap<>();
+    }
+
+    /**
+     * Get the instance of the ResultCacheManager singleton
+     *
+     * @return The instance of the ResultCacheManager
+     */
+    public static ResultCacheManager getInstance() {
+        if (instance == null) {
+            instance = new ResultCacheManager();
+        }
+
+        return instance;
+    }
+
+    /**
+     * Set how many completed jobs to remember and for how long
+     *
+     * @param maximumEntries The maximum amount of completed jobs to remember, 0 to disable the cache
+     * @param timeToLive     How long a completed job is remembered for, in milliseconds
+     */
+    public synchronized void setLimits(int maximumEntries, long timeToLive) {
+        this.maximumEntries = Math.max(0, maximumEntries);
+        this.timeToLive = Math.max(0, timeToLive);
+    }
+
+    /**
+     * @return Whether or not the result cache is enabled
+     */
+    public boolean isEnabled() {
+        return maximumEntries > 0;
+    }
+
+    /**
+     * Check whether the result cache applies to a job. A job depending on other jobs works on their output, so the
+     * job's own content doesn't identify its result
+     *
+     * @param job The job to check
+     *
+     * @return Whether or not the job can be answered from or coalesced by the cache
+     */
+    public boolean isCacheable(Job job) {
+        return isEnabled() && job.getParents().isEmpty();
+    }
+
+    /**
+     * Find the content key of a job, which identifies the work the job carries out, being the content key it was given
+     * or otherwise its full name, along with its duration and resource requirements. The affinity key isn't used, as it
+     * only marks jobs working on the same data, not jobs carrying out the same work
+     *
+     * @param job The job to find the content key of
+     *
+     * @return The content key
+     */
+    public String getContentKey(Job job) {
+        String identity = job.getContent() != null ? "content=" + job.getContent() : "name=" + job.getName().toLowerCase();
+
+        return identity + "," + job.getDuration() + "," + job.getWeight() + "," + job.getMemory() + "," + job.getDisk();
+    }
+
+    /**
+     * Check whether identical work to the job has completed recently enough to answer the job from the cache,
+     * forgetting the completion if it has expired
+     *
+     * @param job The job to check
+     *
+     * @return Whether or not the job can be answered from the cache
+     */
+    public synchronized boolean isCached(Job job) {
+        String contentKey = getContentKey(job);
+        Long completedAt = completedJobs.get(contentKey);
+
+        if (completedAt == null) {
+            return false;
+        }
+
+        if (System.currentTimeMillis() - completedAt > timeToLive) {
+            completedJobs.remove(contentKey);
+
+            return false;
+        }
+
+        hits++;
+
+        return true;
+    }
+
+    /**
+     * Try to coalesce a job with an identical job which is already in flight, otherwise record the job as being in
+     * flight so identical jobs submitted later can be coalesced with it
+     *
+     * @param job The newly submitted job
+     *
+     * @return The in flight job the new job has been coalesced with, or null if the new job needs running itself
+     */
+    public synchronized Job coalesce(Job job) {
+        String contentKey = getContentKey(job);
+        Job inFlightJob = inFlightJobs.get(contentKey);
+
+        if (inFlightJob == null) {
+            inFlightJobs.put(contentKey, job);
+
+            return null;
+        }
+
+        coalescedJobs.computeIfAbsent(contentKey, k -> new ArrayList<>()).add(job);
+        coalesced++;
+
+        return inFlightJob;
+    }
+
+    /**
+     * Record the completion of a job, remembering it in the cache and returning the identical jobs that were waiting
+     * on it
+     *
+     * @param job The job that has completed
+     *
+     * @return The jobs coalesced with the completed job, which are now also complete
+     */
+    public synchronized ArrayList<Job> complete(Job job) {
+        String contentKey = getContentKey(job);
+
+        completedJobs.put(contentKey, System.currentTimeMillis());
+
+        if (inFlightJobs.get(contentKey) != job) {
+            return new ArrayList<>();
+        }
+
+        inFlightJobs.remove(contentKey);
+        ArrayList<Job> waitingJobs = coalescedJobs.remove(contentKey);
+
+        return waitingJobs != null ? waitingJobs : new ArrayList<>();
+    }
+
+    /**
+     * Record the cancellation of a job. If the job was in flight the first job coalesced with it, if any, takes its
+     * place and needs to be run instead
+     *
+     * @param job The job that has been cancelled
+     *
+     * @return The coalesced job which now needs running, or null if there is none
+     */
+    public synchronized Job cancel(Job job) {
+        String contentKey = getContentKey(job);
+        ArrayList<Job> waitingJobs = coalescedJobs.get(contentKey);
+
+        if (inFlightJobs.get(contentKey) != job) {
+            if (waitingJobs != null) {
+                waitingJobs.remove(job);
+            }
+
+            return null;
+        }
+
+        if (waitingJobs == null || waitingJobs.isEmpty()) {
+            inFlightJobs.remove(contentKey);
+            coalescedJobs.remove(contentKey);
+
+            return null;
+        }
+
+        Job promotedJob = waitingJobs.remove(0);
+        inFlightJobs.put(contentKey, promotedJob);
+
+        return promotedJob;
+    }
+
+    /**
+     * Used to display the cache statistics in a nice, readable format
+     *
+     * @return The formatted string
+     */
+    @Override
+    public synchronized String toString() {
+        return "Cached Results: " + completedJobs.size() + "/" + maximumEntries + ", TTL: " + (timeToLive / 1000) + "s, Cache Hits: " + hits + ", In Flight: " + inFlightJobs.size() + ", Coalesced: " + coalesced;
+    }
+}
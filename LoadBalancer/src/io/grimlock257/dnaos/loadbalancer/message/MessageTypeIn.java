@@ -14,6 +14,7 @@ public enum MessageTypeIn {
     NODE_SHUTDOWN_SPECIFIC,
     LB_SHUTDOWN,
     NEW_JOB,
+    NEW_JOB_GROUP,
     COMPLETE_JOB,
     CANCEL_JOB_REQUEST,
     CANCEL_JOB_CONFIRM,
@@ -22,5 +23,8 @@ public enum MessageTypeIn {
     DATA_DUMP_NODES_REQUEST,
     DATA_DUMP_NODE_SPECIFIC_REQUEST,
     IS_ALIVE_CONFIRM,
+    STEAL_JOB_CONFIRM,
+    STEAL_JOB_FAILURE,
+    CAPACITY_UPDATE,
     UNKNOWN
 }
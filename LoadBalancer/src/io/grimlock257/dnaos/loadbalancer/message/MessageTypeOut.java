@@ -22,5 +22,9 @@ public enum MessageTypeOut {
     REGISTER_FAILURE,
     CANCEL_JOB_REQUEST,
     CANCEL_JOB_CONFIRM,
-    IS_ALIVE
+    REJECT_JOB,
+    GROUP_PROGRESS,
+    GROUP_COMPLETE,
+    IS_ALIVE,
+    STEAL_JOB_REQUEST
 }
@@ -0,0 +1,126 @@
+package io.grimlock257.dnaos.loadbalancer.message;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * Represents the frames waiting to be sent to a recipient over UDP, within the Load Balancer project
+ * Frames are drained in batches, several small frames being sent together in one packet as
+ * 'BATCH,<length>+<length>...,<frame><frame>...' so that a burst of frames costs one system call rather than one each
+ *
+ * Adam Watson
+ * Year 2 - Computer Systems Engineering
+ * Distributed Network Architecture & Operating Systems Module CW-2
+ */
+public class OutboundQueue {
+    private final String BATCH = "BATCH";
+
+    private InetAddress addr;
+    private int port;
+
+    private LinkedList<String> frames;
+
+    /**
+     * Create a new, empty queue of frames to the supplied recipient
+     *
+     * @param addr The address of the recipient
+     * @param port The port of the recipient
+     */
+    public OutboundQueue(InetAddress addr, int port) {
+        this.addr = addr;
+        this.port = port;
+        this.frames = new LinkedList<>();
+    }
+
+    /**
+     * @return The address of the recipient
+     */
+    public InetAddress getAddr() {
+        return this.addr;
+    }
+
+    /**
+     * @return The port of the recipient
+     */
+    public int getPort() {
+        return this.port;
+    }
+
+    /**
+     * Queue a frame to be sent, replacing any frame still waiting which the new frame supersedes, such as an older
+     * acknowledgement on the same stream
+     *
+     * @param frame      The frame to send
+     * @param supersedes The start of the frames the new frame replaces, or null if it replaces none
+     */
+    public void add(String frame, String supersedes) {
+        if (supersedes != null) {
+            Iterator<String> queuedFrames = frames.iterator();
+
+            while (queuedFrames.hasNext()) {
+                if (queuedFrames.next().startsWith(supersedes)) {
+                    queuedFrames.remove();
+                }
+            }
+        }
+
+        frames.add(frame);
+    }
+
+    /**
+     * @return Whether or not any frames are waiting to be sent
+     */
+    public boolean isEmpty() {
+        return frames.isEmpty();
+    }
+
+    /**
+     * Remove every queued frame, packing them into as few packets as possible without any packet being longer than the
+     * supplied length, unless a single frame is longer by itself. A packet holding a single frame is the frame as it is
+     *
+     * @param maximumLength The most characters to put in one packet
+     *
+     * @return The contents of each packet to send
+     */
+    public ArrayList<String> drainPackets(int maximumLength) {
+        ArrayList<String> packets = new ArrayList<>();
+
+        while (!frames.isEmpty()) {
+            ArrayList<String> batch = new ArrayList<>();
+            StringBuilder lengths = new StringBuilder();
+            int batchLength = 0;
+
+            // Always take at least one frame, then as many more as fit alongside the batch header
+            do {
+                String frame = frames.poll();
+
+                lengths.append(batch.isEmpty() ? "" : "+").append(frame.length());
+                batchLength += frame.length();
+                batch.add(frame);
+            } while (!frames.isEmpty() && getBatchLength(lengths, batchLength, frames.peek()) <= maximumLength);
+
+            if (batch.size() == 1) {
+                packets.add(batch.get(0));
+            } else {
+                packets.add(BATCH + "," + lengths + "," + String.join("", batch));
+            }
+        }
+
+        return packets;
+    }
+
+    /**
+     * Calculate the length of a batch packet if another frame were added to it
+     *
+     * @param lengths     The lengths of the frames already in the batch, separated by '+'
+     * @param batchLength The total length of the frames already in the batch
+     * @param frame       The frame to add
+     *
+     * @return The length of the packet in characters
+     */
+    private int getBatchLength(StringBuilder lengths, int batchLength, String frame) {
+        return BATCH.length() + 1 + lengths.length() + 1 + String.valueOf(frame.length()).length() + 1 + batchLength + frame.length();
+    }
+}
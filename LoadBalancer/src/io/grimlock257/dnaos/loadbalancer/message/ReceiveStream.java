@@ -0,0 +1,154 @@
+package io.grimlock257.dnaos.loadbalancer.message;
+
+/**
+ * Represents a stream of messages received reliably from another program, within the Load Balancer project
+ * The sequence numbers received on the stream are remembered in a sliding window bitmap so that retransmitted
+ * duplicates are dropped rather than processed twice, and so the sender can be told which messages have arrived
+ *
+ * Adam Watson
+ * Year 2 - Computer Systems Engineering
+ * Distributed Network Architecture & Operating Systems Module CW-2
+ */
+public class ReceiveStream {
+    // How many sequence numbers beyond a gap are remembered, a multiple of 64. Senders never have more than this many
+    // messages in flight, so the window only moves past a gap once the sender has given up on the missing message
+    private final int RECEIVE_WINDOW = 1024;
+
+    // How many sequence numbers received beyond a gap are selectively acknowledged at once
+    private final int MAXIMUM_SELECTIVE_ACKS = 32;
+
+    private long id;
+
+    // Every sequence number up to receivedUpTo has been received. Beyond that, bit i of the window records whether
+    // sequence number receivedUpTo + 1 + i has been received
+    private long receivedUpTo = 0;
+    private long[] window;
+
+    // How many times compression has been offered to the sender, and whether the sender has started compressing
+    private int compressionOffers = 0;
+    private boolean compressionUsed = false;
+
+    /**
+     * Create a new stream of messages from another program
+     *
+     * @param id The id of the stream, chosen by the sender
+     */
+    public ReceiveStream(long id) {
+        this.id = id;
+        this.window = new long[RECEIVE_WINDOW / 64];
+    }
+
+    /**
+     * @return The id of the stream
+     */
+    public long getId() {
+        return this.id;
+    }
+
+    /**
+     * Check whether compression should be offered to the sender alongside an acknowledgement, which it is until the
+     * sender starts compressing or it has been offered the supplied number of times
+     *
+     * @param maximumOffers The most times to offer compression
+     *
+     * @return Whether or not to offer compression, recording the offer if so
+     */
+    public synchronized boolean offerCompression(int maximumOffers) {
+        if (compressionUsed || compressionOffers >= maximumOffers) {
+            return false;
+        }
+
+        compressionOffers++;
+
+        return true;
+    }
+
+    /**
+     * Record the sender having compressed a message, so compression no longer needs offering
+     */
+    public synchronized void recordCompressionUsed() {
+        compressionUsed = true;
+    }
+
+    /**
+     * Record a message received on the stream
+     *
+     * @param sequence The sequence number of the message
+     *
+     * @return Whether or not the message is new, false if it is a duplicate of a message already received
+     */
+    public synchronized boolean receive(long sequence) {
+        if (sequence <= receivedUpTo) {
+            return false;
+        }
+
+        // Give up on the oldest gaps if the message is too far beyond them to fit in the window, which only happens
+        // once the sender has stopped retransmitting the missing messages
+        if (sequence - receivedUpTo > RECEIVE_WINDOW) {
+            slide(sequence - receivedUpTo - RECEIVE_WINDOW);
+        }
+
+        int bit = (int) (sequence - receivedUpTo - 1);
+
+        if ((window[bit / 64] & (1L << (bit % 64))) != 0) {
+            return false;
+        }
+
+        window[bit / 64] |= 1L << (bit % 64);
+
+        // Move past the messages which are now received without a gap
+        int received = 0;
+
+        while (received < RECEIVE_WINDOW && window[received / 64] == -1L) {
+            received += 64;
+        }
+
+        if (received < RECEIVE_WINDOW) {
+            received += Long.numberOfTrailingZeros(~window[received / 64]);
+        }
+
+        slide(received);
+
+        return true;
+    }
+
+    /**
+     * Slide the window forward, treating the sequence numbers it moves past as received
+     *
+     * @param amount How many sequence numbers to move past
+     */
+    private void slide(long amount) {
+        receivedUpTo += amount;
+
+        int words = (int) Math.min(amount / 64, window.length);
+        int bits = (int) (amount % 64);
+
+        for (int i = 0; i < window.length; i++) {
+            int source = i + words;
+            long lower = (source < window.length) ? window[source] >>> bits : 0;
+            long upper = (bits > 0 && source + 1 < window.length) ? window[source + 1] << (64 - bits) : 0;
+
+            window[i] = lower | upper;
+        }
+    }
+
+    /**
+     * Format the acknowledgement of the messages received on the stream, being the id of the stream, the sequence
+     * number up to which every message has been received and the sequence numbers received beyond a gap separated by '+'
+     *
+     * @return The formatted acknowledgement arguments
+     */
+    public synchronized String toAckArgs() {
+        StringBuilder sb = new StringBuilder();
+        int selectiveAcks = 0;
+
+        for (int bit = 0; bit < RECEIVE_WINDOW && selectiveAcks < MAXIMUM_SELECTIVE_ACKS; bit++) {
+            if ((window[bit / 64] & (1L << (bit % 64))) != 0) {
+                sb.append(sb.length() > 0 ? "+" : "").append(receivedUpTo + 1 + bit);
+                selectiveAcks++;
+            }
+        }
+
+        return id + "," + receivedUpTo + (sb.length() > 0 ? "," + sb : "");
+    }
+}
@@ -1,8 +1,13 @@
 package io.grimlock257.dnaos.loadbalancer.node;
 
+import io.grimlock257.dnaos.loadbalancer.job.Job;
+import io.grimlock257.dnaos.loadbalancer.managers.DurationManager;
 import io.grimlock257.dnaos.loadbalancer.managers.JobManager;
 
 import java.net.InetAddress;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Represent the Node in the Load Balancer project
@@ -19,9 +24,26 @@ public class Node {
     private int capacity;
     private String name;
 
+    // Normalised throughput score reported by the node's benchmark, 1.0 if the node didn't run the benchmark
+    private double score;
+
+    // Memory and scratch disk advertised by the node in MB, 0 if not advertised in which case it is not limited
+    private int memory;
+    private int disk;
+
+    // Labels describing the node, such as specialised hardware, which jobs can select nodes by
+    private LinkedHashSet<String> labels;
+
     // Stores how many strikes have been allocated for no reply to a IS_ALIVE message
     private int strikes;
 
+    // Weight given to each new observation in the exponentially weighted moving average of the node's speed
+    private final double SPEED_SMOOTHING = 0.2;
+
+    // Estimated speed of the node relative to declared job durations, 2.0 means jobs complete in half their duration
+    private double speedFactor;
+    private int completedJobs;
+
     /**
      * Node constructor
      *
@@ -29,14 +51,25 @@ public class Node {
      * @param addr     The address of the node (IP Address)
      * @param capacity The maximum capacity of the node
      * @param name     The name of the node
+     * @param score    The normalised throughput score of the node from its benchmark
+     * @param memory   The memory of the node in MB, 0 if not limited
+     * @param disk     The scratch disk of the node in MB, 0 if not limited
      */
-    public Node(int port, InetAddress addr, int capacity, String name) {
+    public Node(int port, InetAddress addr, int capacity, String name, double score, int memory, int disk) {
         this.port = port;
         this.addr = addr;
         this.capacity = capacity;
         this.name = name;
+        this.score = score;
+        this.memory = memory;
+        this.disk = disk;
+        this.labels = new LinkedHashSet<>();
 
         this.strikes = 0;
+
+        // Until jobs have been observed completing on the node, assume it runs as fast as its benchmark suggests
+        this.speedFactor = score;
+        this.completedJobs = 0;
     }
 
     /**
@@ -60,6 +93,70 @@ public class Node {
         return capacity;
     }
 
+    /**
+     * Update the maximum capacity of the node, such as when the node has tuned its own capacity
+     *
+     * @param capacity The new maximum capacity of the node
+     */
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return The memory of the node in MB, 0 if not limited
+     */
+    public int getMemory() {
+        return memory;
+    }
+
+    /**
+     * @return The scratch disk of the node in MB, 0 if not limited
+     */
+    public int getDisk() {
+        return disk;
+    }
+
+    /**
+     * @return The labels describing the node
+     */
+    public Set<String> getLabels() {
+        return labels;
+    }
+
+    /**
+     * Set the labels describing the node, this must be done before the node is added to the NodeManager
+     *
+     * @param labels The labels of the node
+     */
+    public void setLabels(Set<String> labels) {
+        this.labels = new LinkedHashSet<>(labels);
+    }
+
+    /**
+     * Check whether the node matches the label selector of the job
+     *
+     * @param job The job to check
+     *
+     * @return Whether or not the node is eligible to run the job
+     */
+    public boolean matchesSelector(Job job) {
+        return job.getSelector() == null || job.getSelector().matches(labels);
+    }
+
+    /**
+     * @return The normalised throughput score of the node from its benchmark
+     */
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * @return The capacity of the node weighted by its benchmark score
+     */
+    public double getWeightedCapacity() {
+        return capacity * score;
+    }
+
     /**
      * @return The name of the node
      */
@@ -94,7 +191,242 @@ public class Node {
      * @return The calculated percentage usage of the node
      */
     public double calcUsage() {
-        return (JobManager.getInstance().getAmountOfActiveNodeJobs(this) / (double) capacity) * 100;
+        return (JobManager.getInstance().getNodeSlotUsage(this) / (double) capacity) * 100;
+    }
+
+    /**
+     * Calculates how many capacity slots the job occupies on the node. A job heavier than the whole node occupies the
+     * entire node rather than never being able to run
+     *
+     * @param job The job to calculate the slot weight of
+     *
+     * @return The slots the job occupies on the node
+     */
+    public int getSlotWeight(Job job) {
+        return Math.min(job.getWeight(), capacity);
+    }
+
+    /**
+     * @return The amount of capacity slots not allocated to any job, negative if jobs are waiting in the node's queue
+     */
+    public int getFreeSlots() {
+        return capacity - JobManager.getInstance().getNodeSlotUsage(this);
+    }
+
+    /**
+     * @return The amount of memory not allocated to any job in MB
+     */
+    public int getFreeMemory() {
+        return memory - JobManager.getInstance().getNodeMemoryUsage(this);
+    }
+
+    /**
+     * @return The amount of scratch disk not allocated to any job in MB
+     */
+    public int getFreeDisk() {
+        return disk - JobManager.getInstance().getNodeDiskUsage(this);
+    }
+
+    /**
+     * Check whether the node has enough free slots, memory and scratch disk to start the job straight away
+     *
+     * @param job The job to check
+     *
+     * @return Whether or not the job fits in the free resources of the node
+     */
+    public boolean canFit(Job job) {
+        return getFreeSlots() >= getSlotWeight(job) && (memory == 0 || getFreeMemory() >= job.getMemory()) && (disk == 0 || getFreeDisk() >= job.getDisk());
+    }
+
+    /**
+     * Count how many copies of the job could start straight away in the free resources of the node
+     *
+     * @param job The job to check
+     *
+     * @return The amount of copies of the job that would fit
+     */
+    public int countFreeCopies(Job job) {
+        return countCopies(job, getFreeSlots(), getFreeMemory(), getFreeDisk());
+    }
+
+    /**
+     * Count how many copies of the job could start on the node at a point in the future, once the jobs predicted to
+     * have completed by then have released their resources
+     *
+     * @param job          The job to check
+     * @param releaseTimes The predicted time each job allocated to the node releases its resources, in milliseconds
+     * @param time         The point in the future to check, in milliseconds
+     *
+     * @return The amount of copies of the job that would fit
+     */
+    public int countCopiesAt(Job job, Map<Job, Long> releaseTimes, long time) {
+        return countCopiesAt(job, releaseTimes, time, null);
+    }
+
+    /**
+     * Count how many copies of the job could start on the node at a point in the future, if another job were started on
+     * the node now and still running then
+     *
+     * @param job          The job to check
+     * @param releaseTimes The predicted time each job allocated to the node releases its resources, in milliseconds
+     * @param time         The point in the future to check, in milliseconds
+     * @param runningJob   The job started now and still holding its resources at that time, or null if there is none
+     *
+     * @return The amount of copies of the job that would fit
+     */
+    public int countCopiesAt(Job job, Map<Job, Long> releaseTimes, long time, Job runningJob) {
+        int freeSlots = getFreeSlots();
+        int freeMemory = getFreeMemory();
+        int freeDisk = getFreeDisk();
+
+        if (runningJob != null) {
+            freeSlots -= getSlotWeight(runningJob);
+            freeMemory -= runningJob.getMemory();
+            freeDisk -= runningJob.getDisk();
+        }
+
+        for (Map.Entry<Job, Long> releaseTime : releaseTimes.entrySet()) {
+            if (releaseTime.getValue() <= time) {
+                freeSlots += getSlotWeight(releaseTime.getKey());
+                freeMemory += releaseTime.getKey().getMemory();
+                freeDisk += releaseTime.getKey().getDisk();
+            }
+        }
+
+        return countCopies(job, freeSlots, freeMemory, freeDisk);
+    }
+
+    /**
+     * Count how many copies of the job fit in the supplied amounts of free resources. Resources the node does not limit
+     * are ignored
+     *
+     * @param job        The job to check
+     * @param freeSlots  The free capacity slots
+     * @param freeMemory The free memory in MB
+     * @param freeDisk   The free scratch disk in MB
+     *
+     * @return The amount of copies of the job that would fit, 0 if the node has no capacity
+     */
+    private int countCopies(Job job, int freeSlots, int freeMemory, int freeDisk) {
+        int slotWeight = getSlotWeight(job);
+
+        if (slotWeight <= 0) {
+            return 0;
+        }
+
+        int copies = freeSlots / slotWeight;
+
+        if (memory > 0 && job.getMemory() > 0) {
+            copies = Math.min(copies, freeMemory / job.getMemory());
+        }
+
+        if (disk > 0 && job.getDisk() > 0) {
+            copies = Math.min(copies, freeDisk / job.getDisk());
+        }
+
+        return Math.max(0, copies);
+    }
+
+    /**
+     * Check whether the node has enough memory and scratch disk in total to ever run the job, even if it has to wait
+     * for the jobs already allocated to the node to complete first
+     *
+     * @param job The job to check
+     *
+     * @return Whether or not the job could run on the node
+     */
+    public boolean isLargeEnough(Job job) {
+        return (memory == 0 || memory >= job.getMemory()) && (disk == 0 || disk >= job.getDisk());
+    }
+
+    /**
+     * Calculates how tightly the job would pack into the free resources of the node, as the sum across each resource
+     * of the fraction of the resource which would be left free after allocating the job. Resources the node does not
+     * limit are ignored
+     *
+     * @param job The job to calculate the fit of
+     *
+     * @return The fraction of resources that would be left free, lower is a tighter fit
+     */
+    public double calcLeftoverAfter(Job job) {
+        double leftover = (getFreeSlots() - getSlotWeight(job)) / (double) capacity;
+
+        if (memory > 0) {
+            leftover += (getFreeMemory() - job.getMemory()) / (double) memory;
+        }
+
+        if (disk > 0) {
+            leftover += (getFreeDisk() - job.getDisk()) / (double) disk;
+        }
+
+        return leftover;
+    }
+
+    /**
+     * @return The estimated speed of the node relative to declared job durations
+     */
+    public double getSpeedFactor() {
+        return speedFactor;
+    }
+
+    /**
+     * @return The amount of jobs the node has completed
+     */
+    public int getCompletedJobs() {
+        return completedJobs;
+    }
+
+    /**
+     * Record a job completed by the node, updating the estimated speed of the node using the ratio of the expected
+     * duration of the job to its observed runtime
+     *
+     * @param expectedDuration The expected duration of the job on a node with a speed factor of 1.0, in milliseconds
+     * @param runtime          The observed runtime of the job, in milliseconds
+     */
+    public void recordCompletion(double expectedDuration, long runtime) {
+        completedJobs++;
+
+        // A job with no duration or no measurable runtime says nothing about the speed of the node
+        if (expectedDuration > 0 && runtime > 0) {
+            double speedSample = expectedDuration / runtime;
+
+            speedFactor = (SPEED_SMOOTHING * speedSample) + ((1 - SPEED_SMOOTHING) * speedFactor);
+        }
+    }
+
+    /**
+     * Predicts how long it would take the node to complete the supplied job if it were allocated now. If the node is
+     * too full to fit the job, it has to wait for the work already allocated to the node to be shared out across its slots
+     *
+     * @param job The job to predict the completion time of
+     *
+     * @return The predicted time until the job completes, in milliseconds
+     */
+    public double calcPredictedCompletion(Job job) {
+        double runtime = DurationManager.getInstance().getPredictedDuration(job, 0.5) / speedFactor;
+
+        if (canFit(job)) {
+            return runtime;
+        }
+
+        return (JobManager.getInstance().getRemainingNodeWork(this) / capacity) + runtime;
+    }
+
+    /**
+     * Calculates how many of the jobs allocated to the node are waiting in its local queue, i.e. those which the node
+     * will not start until enough of its running jobs complete to free the slots they need
+     *
+     * @return The amount of jobs queued on the node
+     */
+    public int getQueuedJobs() {
+        return JobManager.getInstance().getQueuedNodeJobs(this);
+    }
+
+    /**
+     * @return The speed estimation statistics of the node formatted as a string
+     */
+    public String speedToString() {
+        return "Name: " + name + ", Benchmark Score: " + String.format("%.2f", score) + ", Speed Factor: " + String.format("%.2f", speedFactor) + ", Completed Jobs: " + completedJobs;
     }
 
     /**
@@ -102,6 +434,6 @@ public class Node {
      */
     @Override
     public String toString() {
-        return "Name: " + name + ", Capacity: " + capacity + ", Address: " + addr + ", Port: " + port + ", Usage: " + String.format("%.2f", calcUsage()) + "%";
+        return "Name: " + name + ", Capacity: " + capacity + (memory > 0 ? ", Memory: " + memory + "MB" : "") + (disk > 0 ? ", Disk: " + disk + "MB" : "") + (!labels.isEmpty() ? ", Labels: " + String.join("+", labels) : "") + ", Score: " + String.format("%.2f", score) + ", Address: " + addr + ", Port: " + port + ", Usage: " + String.format("%.2f", calcUsage()) + "%";
     }
 }
@@ -11,21 +11,25 @@ import java.net.InetAddress;
 public class JobProcessRunnable implements Runnable {
 
     private Job job;
+    private String nodeName;
     private InetAddress lbAddr;
     private int lbPort;
 
-    public JobProcessRunnable(Job job, InetAddress lbAddr, int lbPort) {
+    public JobProcessRunnable(Job job, String nodeName, InetAddress lbAddr, int lbPort) {
         this.job = job;
+        this.nodeName = nodeName;
         this.lbAddr = lbAddr;
         this.lbPort = lbPort;
     }
 
     @Override
     public void run() {
+        long startTime = System.currentTimeMillis();
+
         // Process the job
         if (processJob(job)) {
-            // Send the complete job back to the Load Balancer
-            MessageManager.getInstance().send(MessageTypeOut.COMPLETE_JOB + "," + job.getName(), lbAddr, lbPort);
+            // Send the complete job back to the Load Balancer, along with how long it took to process
+            MessageManager.getInstance().send(MessageTypeOut.COMPLETE_JOB + "," + job.getName() + "," + nodeName + "," + (System.currentTimeMillis() - startTime), lbAddr, lbPort);
             JobManager.getInstance().updateJobStatus(job, JobStatus.SENT);
             System.out.println("");
 
@@ -1,5 +1,8 @@
 package io.grimlock257.dnaos.node;
 
+import io.grimlock257.dnaos.node.message.Transport;
+
+import java.io.File;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 
@@ -19,14 +22,72 @@ public class Main {
      * @param args The command line arguments supplied
      */
     public static void main(String[] args) {
-        if (args.length == 5) {
+        if (args.length >= 5) {
             // Get parameters from the supplied command line arguments
             String name = args[0];
-            int capacity = Integer.parseInt(args[1]);
             int port = Integer.parseInt(args[2]);
             String lbHost = args[3];
             int lbPort = Integer.parseInt(args[4]);
 
+            // Either use the supplied capacity, or calibrate the capacity to the hardware by running a benchmark
+            int capacity;
+            NodeBenchmark benchmark = null;
+
+            if (args[1].trim().equalsIgnoreCase("auto")) {
+                System.out.println("[INFO] Running benchmark to calibrate capacity...");
+
+                benchmark = new NodeBenchmark();
+                benchmark.run();
+
+                capacity = benchmark.getRecommendedCapacity();
+            } else {
+                capacity = Integer.parseInt(args[1]);
+            }
+
+            // Get any optional settings, supplied in the form <setting>=<value>
+            boolean autoTune = false;
+            String labels = "";
+            Transport transport = Transport.UDP;
+
+            // By default advertise the memory available to the JVM and the free space in the temporary directory
+            int memory = (int) (Runtime.getRuntime().maxMemory() / (1024 * 1024));
+            int disk = (int) Math.min(Integer.MAX_VALUE, new File(System.getProperty("java.io.tmpdir")).getUsableSpace() / (1024 * 1024));
+
+            for (int i = 5; i < args.length; i++) {
+                String[] setting = args[i].split("=", 2);
+
+                try {
+                    switch (setting[0].trim().toLowerCase()) {
+                        case "autotune":
+                            autoTune = Boolean.parseBoolean(setting[1].trim());
+
+                            break;
+                        case "labels":
+                            labels = setting[1].trim().toLowerCase();
+
+                            break;
+                        case "memory":
+                            memory = Integer.parseInt(setting[1].trim());
+
+                            break;
+                        case "disk":
+                            disk = Integer.parseInt(setting[1].trim());
+
+                            break;
+                        case "transport":
+                            transport = Transport.valueOf(setting[1].trim().toUpperCase());
+
+                            break;
+                        default:
+                            System.err.println("[ERROR] Unknown setting '" + setting[0] + "', exiting...");
+                            System.exit(1);
+                    }
+                } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                    System.err.println("[ERROR] Invalid value supplied for setting '" + setting[0] + "', exiting...");
+                    System.exit(1);
+                }
+            }
+
             String ip = null;
             try {
                 ip = InetAddress.getLocalHost().getHostAddress();
@@ -41,16 +102,34 @@ public class Main {
             System.out.println("[INFO] Node details:");
             System.out.println("[INFO] - Name: " + name);
             System.out.println("[INFO] - Capacity: " + capacity);
+            System.out.println("[INFO] - Memory: " + memory + "MB");
+            System.out.println("[INFO] - Disk: " + disk + "MB");
+            if (!labels.isEmpty()) {
+                System.out.println("[INFO] - Labels: " + labels);
+            }
+            if (benchmark != null) {
+                System.out.println("[INFO] - Benchmark: " + benchmark.toString());
+            }
             System.out.println("[INFO] - IP: " + ip);
             System.out.println("[INFO] - Port: " + port);
             System.out.println("[INFO] - Load Balancer IP: " + lbHost);
             System.out.println("[INFO] - Load Balancer Port: " + lbPort);
+            for (int i = 5; i < args.length; i++) {
+                System.out.println("[INFO] - Setting: " + args[i].trim());
+            }
             System.out.println("===============================================================================");
 
             Node node = new Node(name, capacity, port, lbHost, lbPort);
+            if (benchmark != null) {
+                node.setBenchmarkScore(benchmark.getScore());
+            }
+            node.setResources(memory, disk);
+            node.setLabels(labels);
+            node.setAutoTune(autoTune);
+            node.setTransport(transport);
             node.start();
         } else {
-            System.err.println("[ERROR] Invalid arguments supplied! Usage: java node <name> <capacity> <port> <load balancer host address> <load balancer port>");
+            System.err.println("[ERROR] Invalid arguments supplied! Usage: java node <name> <capacity | AUTO> <port> <load balancer host address> <load balancer port> [autotune=<true | false>] [memory=<MB>] [disk=<MB>] [labels=<label>+<label>...] [transport=<udp | tcp | shm>]");
         }
     }
 }
\ No newline at end of file
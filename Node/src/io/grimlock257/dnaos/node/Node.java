@@ -6,10 +6,13 @@ import io.grimlock257.dnaos.node.managers.JobManager;
 import io.grimlock257.dnaos.node.managers.MessageManager;
 import io.grimlock257.dnaos.node.message.MessageTypeIn;
 import io.grimlock257.dnaos.node.message.MessageTypeOut;
+import io.grimlock257.dnaos.node.message.Transport;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
 import java.net.BindException;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
@@ -31,19 +34,52 @@ public class Node {
     private final int I_MESSAGE_TYPE = 0;
     private final int I_JOB_NAME = 1;
     private final int I_JOB_DURATION = 2;
+    private final int I_JOB_ATTRIBUTES = 3;
     private final int I_CANCEL_REQUEST_JOB_NAME = 1;
+    private final int I_STEAL_THIEF_NAME = 1;
+    private final int I_STEAL_JOB_NAME = 2;
 
     // How frequently to reattempt connection to the load balancer
     private final int RECONNECTION_TIME = 4 * 1000;
 
     private boolean connected = false;
 
+    // How frequently the auto-tuner reviews the capacity of the node
+    private final int TUNE_INTERVAL = 10 * 1000;
+
+    // Average time jobs may spend queued before the auto-tuner considers growing the capacity
+    private final int QUEUE_DELAY_THRESHOLD = 1000;
+
+    // CPU load per processor above which capacity is shrunk, and below which capacity is allowed to grow
+    private final double CPU_SATURATED = 0.9;
+    private final double CPU_HEADROOM = 0.7;
+
+    // The auto-tuner never grows the capacity beyond this multiple of the starting capacity
+    private final int MAXIMUM_CAPACITY_MULTIPLIER = 2;
+
+    // Whether the node adjusts its own capacity, and when it was last reviewed
+    private boolean autoTune = false;
+    private long lastTune;
+
+    // The transport used to send messages, messages are received over both UDP and TCP regardless
+    private Transport transport = Transport.UDP;
+
     // Information about the node
     private String name;
     private int capacity;
     private int port;
     private String ip;
 
+    // Normalised throughput score from the benchmark, 0 if the benchmark wasn't run
+    private double benchmarkScore = 0;
+
+    // Memory and scratch disk available to jobs in MB, 0 if not limited
+    private int memory = 0;
+    private int disk = 0;
+
+    // Labels describing the node separated by '+', which jobs can select nodes by, empty if the node has no labels
+    private String labels = "";
+
     // Information about the load balancer
     private String lbHost;
     private int lbPort;
@@ -77,6 +113,54 @@ public class Node {
         this.lbPort = lbPort;
     }
 
+    /**
+     * Set the normalised throughput score measured by the benchmark, which is reported to the Load Balancer when registering
+     *
+     * @param benchmarkScore The benchmark score
+     */
+    public void setBenchmarkScore(double benchmarkScore) {
+        this.benchmarkScore = benchmarkScore;
+    }
+
+    /**
+     * Set the memory and scratch disk available to jobs, which are reported to the Load Balancer when registering
+     *
+     * @param memory The memory available to jobs in MB, 0 if not limited
+     * @param disk   The scratch disk available to jobs in MB, 0 if not limited
+     */
+    public void setResources(int memory, int disk) {
+        this.memory = memory;
+        this.disk = disk;
+    }
+
+    /**
+     * Set the labels describing the node, such as specialised hardware, which are reported to the Load Balancer when
+     * registering
+     *
+     * @param labels The labels separated by '+'
+     */
+    public void setLabels(String labels) {
+        this.labels = labels;
+    }
+
+    /**
+     * Set whether the node should adjust its own capacity based on the measured queueing delay and CPU load
+     *
+     * @param autoTune Whether to enable the auto-tuner
+     */
+    public void setAutoTune(boolean autoTune) {
+        this.autoTune = autoTune;
+    }
+
+    /**
+     * Set the transport used to send messages, either UDP packets or frames over persistent TCP connections
+     *
+     * @param transport The transport to send messages over
+     */
+    public void setTransport(Transport transport) {
+        this.transport = transport;
+    }
+
     /**
      * Try to open the DatagramSocket, if successful create the managers, connect and begin the main loop
      */
@@ -86,6 +170,7 @@ public class Node {
             socket.setSoTimeout(0);
 
             messageManager = MessageManager.getInstance();
+            messageManager.setTransport(transport);
             messageManager.init(socket);
             jobManager = JobManager.getInstance();
 
@@ -99,7 +184,7 @@ public class Node {
         } catch (BindException e) {
             if (e.getMessage().toLowerCase().contains("address already in use")) {
                 System.err.println("[ERROR] Port " + port + " is already in use, please select another port via the command line arguments");
-                System.err.println("[ERROR] Usage: java node <name> <capacity> <port> <load balancer host address> <load balancer port>");
+                System.err.println("[ERROR] Usage: java node <name> <capacity | AUTO> <port> <load balancer host address> <load balancer port> [autotune=<true | false>] [memory=<MB>] [disk=<MB>] [labels=<label>+<label>...] [transport=<udp | tcp | shm>]");
             } else {
                 System.err.println("[ERROR] Unhandled BindException error thrown");
                 e.printStackTrace();
@@ -132,8 +217,9 @@ public class Node {
             @Override
             public void run() {
                 try {
-                    // Send register message to the Load Balancer
-                    messageManager.send(MessageTypeOut.NODE_REGISTER.toString() + "," + ip + "," + port + "," + name + "," + capacity, lbAddr, lbPort);
+                    // Send register message to the Load Balancer, including the benchmark score (0 if the benchmark wasn't
+                    // run), the resources available to jobs and the labels of the node
+                    messageManager.send(MessageTypeOut.NODE_REGISTER.toString() + "," + ip + "," + port + "," + name + "," + capacity + "," + benchmarkScore + ",memory=" + memory + ",disk=" + disk + (labels.isEmpty() ? "" : ",labels=" + labels), lbAddr, lbPort);
                 } catch (Exception e) {
                     System.err.println("[ERROR] Unhandled Exception thrown");
                     e.printStackTrace();
@@ -175,6 +261,9 @@ public class Node {
 
         userInput.start();
 
+        int initialCapacity = capacity;
+        lastTune = System.currentTimeMillis();
+
         while (true) {
             // Process messages (if available)
             String nextMessage = messageManager.getNextMessage();
@@ -183,17 +272,64 @@ public class Node {
                 processMessage(nextMessage);
             }
 
-            // Process a job (if available)
-            Job nextJob = jobManager.getNextJob();
+            // Process a job (if available and there are enough free resources), otherwise it remains queued
+            Job nextJob = jobManager.getNextJob(capacity, memory, disk);
 
             if (nextJob != null) {
                 // A new thread is created for each job to be ran
-                Thread jobProcessing = new Thread(new JobProcessRunnable(nextJob, lbAddr, lbPort),"job_processing_" + nextJob.getName().toLowerCase().replace(" ", "_"));
+                Thread jobProcessing = new Thread(new JobProcessRunnable(nextJob, name, lbAddr, lbPort),"job_processing_" + nextJob.getName().toLowerCase().replace(" ", "_"));
                 jobProcessing.start();
             }
+
+            // Periodically review the capacity of the node, if enabled
+            if (autoTune && System.currentTimeMillis() - lastTune >= TUNE_INTERVAL) {
+                tuneCapacity(initialCapacity);
+                lastTune = System.currentTimeMillis();
+            }
         }
     }
 
+    /**
+     * Grow the capacity by one slot if jobs are spending too long queued while the CPU has headroom, or shrink it by one
+     * slot if the CPU is saturated, informing the Load Balancer of any change via a CAPACITY_UPDATE message. The capacity
+     * is never grown if the CPU load can't be measured, as the headroom is then unknown
+     *
+     * @param initialCapacity The capacity the node started with, used to bound how far the capacity can grow
+     */
+    private void tuneCapacity(int initialCapacity) {
+        double queueDelay = jobManager.takeAverageQueueDelay();
+        double cpuLoad = getCpuLoad();
+
+        int newCapacity = capacity;
+
+        if (cpuLoad >= CPU_SATURATED && capacity > 1) {
+            newCapacity = capacity - 1;
+        } else if (queueDelay > QUEUE_DELAY_THRESHOLD && cpuLoad >= 0 && cpuLoad < CPU_HEADROOM && capacity < initialCapacity * MAXIMUM_CAPACITY_MULTIPLIER) {
+            newCapacity = capacity + 1;
+        }
+
+        if (newCapacity != capacity) {
+            System.out.println("===============================================================================");
+            System.out.println("[INFO] Auto-tuner changing capacity from " + capacity + " to " + newCapacity + " (average queue delay: " + String.format("%.0f", queueDelay) + "ms, CPU load: " + (cpuLoad < 0 ? "unavailable" : String.format("%.2f", cpuLoad)) + ")");
+
+            capacity = newCapacity;
+
+            messageManager.send(MessageTypeOut.CAPACITY_UPDATE.toString() + "," + name + "," + capacity, lbAddr, lbPort);
+        }
+    }
+
+    /**
+     * Calculate the CPU load of the machine as the system load average per available processor
+     *
+     * @return The CPU load, where 1.0 means every processor is busy, or a negative value if unavailable on this platform
+     */
+    private double getCpuLoad() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        double loadAverage = os.getSystemLoadAverage();
+
+        return (loadAverage < 0) ? -1 : loadAverage / os.getAvailableProcessors();
+    }
+
     /**
      * Take in a message a string, analyse it and perform the appropriate action based on the contents
      *
@@ -237,10 +373,18 @@ public class Node {
                 String jobName = getValidStringArg(args, I_JOB_NAME);
                 int jobDuration = getValidIntArg(args, I_JOB_DURATION);
 
-                if (jobName == null || jobDuration == -1) {
+                Job existingJob = (jobName == null) ? null : jobManager.getByName(jobName);
+                JobStatus existingJobStatus = (existingJob == null) ? null : jobManager.getJobs().get(existingJob);
+
+                if (existingJob != null && (existingJobStatus == JobStatus.QUEUED || existingJobStatus == JobStatus.IN_PROGRESS)) {
+                    // The job is still queued or running on this node, so running it again would duplicate it. A job
+                    // reusing the name of one that has finished is a new job, as repeated messages are already dropped
+                    System.out.println("[INFO] Job '" + jobName + "' is still in progress, ignoring the job reusing its name");
+                } else if (jobName == null || jobDuration == -1) {
                     System.out.println("[ERROR] Job was not added, some of the supplied information was invalid");
                 } else {
                     Job newJob = new Job(jobName, jobDuration);
+                    setJobAttributes(newJob, args, I_JOB_ATTRIBUTES);
 
                     jobManager.addJob(newJob);
 
@@ -299,7 +443,7 @@ public class Node {
                         }
 
                         System.out.println("");
-                        messageManager.send(MessageTypeOut.CANCEL_JOB_CONFIRM.toString() + "," + cancelJobName, lbAddr, lbPort);
+                        messageManager.send(MessageTypeOut.CANCEL_JOB_CONFIRM.toString() + "," + cancelJobName + "," + name, lbAddr, lbPort);
 
                         jobManager.updateJobStatus(cancelJob, JobStatus.CANCELLED);
 
@@ -307,6 +451,40 @@ public class Node {
                     }
                 }
 
+                break;
+            case STEAL_JOB_REQUEST:
+                if (!connected) {
+                    System.err.println("[ERROR] Received '" + message + "', despite not being connected to a load balancer");
+                    break;
+                }
+
+                System.out.println("[INFO] Received '" + message + "', processing...\n");
+
+                String stealThiefName = getValidStringArg(args, I_STEAL_THIEF_NAME);
+
+                if (stealThiefName == null) {
+                    System.out.println("[ERROR] Job was not given up, some of the supplied information was invalid");
+                } else {
+                    // Give up the job the load balancer asked for if it is still queued, otherwise the last queued job
+                    String requestedJobName = getValidStringArg(args, I_STEAL_JOB_NAME);
+                    Job stolenJob = (requestedJobName != null) ? jobManager.getQueuedJob(requestedJobName) : jobManager.getLastQueuedJob();
+
+                    if (stolenJob == null) {
+                        System.out.println("[INFO] No queued jobs to give up to node '" + stealThiefName + "'\n");
+
+                        messageManager.send(MessageTypeOut.STEAL_JOB_FAILURE.toString() + "," + name + "," + stealThiefName, lbAddr, lbPort);
+                    } else {
+                        System.out.println("[INFO] Previous job information for job '" + stolenJob.getName() + "':\n" + jobManager.jobToString(stolenJob.getName()) + "\n");
+
+                        jobManager.updateJobStatus(stolenJob, JobStatus.STOLEN);
+
+                        messageManager.send(MessageTypeOut.STEAL_JOB_CONFIRM.toString() + "," + name + "," + stolenJob.getName() + "," + stealThiefName, lbAddr, lbPort);
+
+                        System.out.println("\n[INFO] Job '" + stolenJob.getName() + "' has been given up to node '" + stealThiefName + "'\n");
+                        System.out.println("[INFO] Current job list:\n" + jobManager.toString());
+                    }
+                }
+
                 break;
             case DATA_DUMP_NODE:
                 if (!connected) {
@@ -389,6 +567,9 @@ public class Node {
         if (selection.equals("y")) {
             messageManager.send(MessageTypeOut.NODE_RESIGN.toString() + "," + name, lbAddr, lbPort);
 
+            // Give the messages just sent a moment to be acknowledged before exiting
+            messageManager.flush(1000);
+
             System.out.println("[INFO] Shutting down...");
             System.exit(0);
         } else {
@@ -410,6 +591,7 @@ public class Node {
 
         // Add the headings to each StringBuilder
         sbResult.append("[INFO] Node: ").append(this.toString()).append("\n\n");
+        sbResult.append("[INFO] Messages: ").append(messageManager.toString()).append("\n\n");
         sbSentJobs.append("[INFO] Jobs completed by node '").append(this.name).append("':\n");
         sbAllocatedJobs.append("[INFO] Jobs allocated to node '").append(this.name).append("':\n");
         sbAliveThreads.append("[INFO] Alive (non-daemon) threads in node '").append(this.name).append("':\n");
@@ -468,6 +650,43 @@ public class Node {
         return userInput;
     }
 
+    /**
+     * Set the optional attributes of a job supplied in a NEW_JOB message, each in the form attribute=value. The load
+     * balancer has already validated the attributes, so any not used by the node are ignored
+     *
+     * @param job  The job to set the attributes of
+     * @param args The message broken up into elements based on commas
+     * @param pos  The index of the first attribute in the message
+     */
+    private void setJobAttributes(Job job, String[] args, int pos) {
+        for (int i = pos; i < args.length; i++) {
+            String[] attribute = args[i].split("=", 2);
+
+            if (attribute.length != 2) {
+                continue;
+            }
+
+            switch (attribute[0].trim().toLowerCase()) {
+                case "weight":
+                    job.setWeight(Math.max(1, getValidIntArg(attribute, 1)));
+
+                    break;
+                case "memory":
+                    job.setMemory(Math.max(0, getValidIntArg(attribute, 1)));
+
+                    break;
+                case "disk":
+                    job.setDisk(Math.max(0, getValidIntArg(attribute, 1)));
+
+                    break;
+                case "range":
+                    job.setRange(attribute[1].trim());
+
+                    break;
+            }
+        }
+    }
+
     /**
      * Validate the MessageTypeIn of the message
      *
@@ -528,6 +747,6 @@ public class Node {
      */
     @Override
     public String toString() {
-        return "Name: " + name + ", Capacity: " + capacity + ", Address: " + ip + ", Port: " + port + ", Usage: " + String.format("%.2f", (jobManager.getAmountOfActiveJobs() / (double) capacity) * 100) + "%";
+        return "Name: " + name + ", Capacity: " + capacity + (memory > 0 ? ", Memory: " + memory + "MB" : "") + (disk > 0 ? ", Disk: " + disk + "MB" : "") + (labels.isEmpty() ? "" : ", Labels: " + labels) + ", Address: " + ip + ", Port: " + port + ", Usage: " + String.format("%.2f", (jobManager.getActiveSlots(capacity) / (double) capacity) * 100) + "%";
     }
 }
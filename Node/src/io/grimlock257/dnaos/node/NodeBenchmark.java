@@ -0,0 +1,134 @@
+package io.grimlock257.dnaos.node;
+
+/**
+ * A short CPU and memory micro-benchmark used to calibrate the capacity of the node to the hardware it is running on
+ * The throughput measured is normalised against a reference machine, so a score of 1.0 is equivalent to the reference
+ *
+ * Adam Watson
+ * Year 2 - Computer Systems Engineering
+ * Distributed Network Architecture & Operating Systems Module CW-2
+ */
+public class NodeBenchmark {
+    // How long to run each part of the benchmark for, after the warm up
+    private final int BENCHMARK_TIME = 250;
+    private final int WARM_UP_TIME = 100;
+
+    // Throughput of the reference machine, used to normalise the measured throughput
+    private final double REFERENCE_CPU_OPS_PER_SECOND = 1_600_000_000.0;
+    private final double REFERENCE_MEMORY_BYTES_PER_SECOND = 9_000_000_000.0;
+
+    // Size of the array used by the memory benchmark, large enough to not fit within the CPU caches
+    private final int MEMORY_ARRAY_LENGTH = 4 * 1024 * 1024;
+
+    // Memory set aside for each job slot when recommending a capacity
+    private final long MEMORY_PER_SLOT = 64 * 1024 * 1024;
+
+    private double cpuScore;
+    private double memoryScore;
+
+    // Stores the results of the benchmark calculations so they aren't optimised away
+    private volatile long checksum;
+
+    /**
+     * Run the CPU and memory benchmarks
+     */
+    public void run() {
+        // Run each benchmark once first to let the JIT compiler optimise it, and discard the result
+        measureCpu(WARM_UP_TIME);
+        measureMemory(WARM_UP_TIME);
+
+        cpuScore = measureCpu(BENCHMARK_TIME) / REFERENCE_CPU_OPS_PER_SECOND;
+        memoryScore = measureMemory(BENCHMARK_TIME) / REFERENCE_MEMORY_BYTES_PER_SECOND;
+    }
+
+    /**
+     * Measure how many integer operations per second can be carried out on a single thread
+     *
+     * @param time How long to run the benchmark for, in milliseconds
+     *
+     * @return The measured operations per second
+     */
+    private double measureCpu(int time) {
+        long value = 1;
+        long operations = 0;
+
+        long start = System.nanoTime();
+        long end = start + (time * 1_000_000L);
+        long now;
+
+        // Carry out batches of operations, only checking the time between batches
+        do {
+            for (int i = 0; i < 100_000; i++) {
+                value = (value * 6364136223846793005L) + 1442695040888963407L;
+                value ^= (value >>> 29);
+            }
+
+            operations += 100_000 * 4;
+            now = System.nanoTime();
+        } while (now < end);
+
+        checksum += value;
+
+        return operations / ((now - start) / 1_000_000_000.0);
+    }
+
+    /**
+     * Measure how many bytes per second can be read from and written to memory
+     *
+     * @param time How long to run the benchmark for, in milliseconds
+     *
+     * @return The measured bytes per second
+     */
+    private double measureMemory(int time) {
+        long[] array = new long[MEMORY_ARRAY_LENGTH];
+        long bytes = 0;
+        long sum = 0;
+
+        long start = System.nanoTime();
+        long end = start + (time * 1_000_000L);
+        long now;
+
+        // Repeatedly read and write every element of the array, only checking the time between passes
+        do {
+            for (int i = 0; i < array.length; i++) {
+                sum += array[i];
+                array[i] = sum;
+            }
+
+            bytes += array.length * 8L * 2;
+            now = System.nanoTime();
+        } while (now < end);
+
+        checksum += sum;
+
+        return bytes / ((now - start) / 1_000_000_000.0);
+    }
+
+    /**
+     * @return The normalised throughput score of the node, the geometric mean of the CPU and memory scores
+     */
+    public double getScore() {
+        return Math.sqrt(cpuScore * memoryScore);
+    }
+
+    /**
+     * Recommend a capacity for the node of one slot per processor scaled by the throughput score, limited by the memory
+     * available to the node
+     *
+     * @return The recommended capacity, at least 1
+     */
+    public int getRecommendedCapacity() {
+        int cpuCapacity = (int) Math.round(Runtime.getRuntime().availableProcessors() * getScore());
+        int memoryCapacity = (int) (Runtime.getRuntime().maxMemory() / MEMORY_PER_SLOT);
+
+        return Math.max(1, Math.min(cpuCapacity, memoryCapacity));
+    }
+
+    /**
+     * @return The benchmark results formatted as a string
+     */
+    @Override
+    public String toString() {
+        return "CPU Score: " + String.format("%.2f", cpuScore) + ", Memory Score: " + String.format("%.2f", memoryScore) + ", Score: " + String.format("%.2f", getScore()) + ", Recommended Capacity: " + getRecommendedCapacity();
+    }
+}
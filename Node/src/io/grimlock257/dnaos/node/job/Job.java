@@ -11,6 +11,19 @@ public class Job {
     private String name;
     private int duration;
 
+    // The amount of node capacity slots the job occupies while running
+    private int weight = 1;
+
+    // The memory and scratch disk the job requires while running, in MB
+    private int memory = 0;
+    private int disk = 0;
+
+    // For a chunk of a job split across several nodes, the part of the job's work range it covers, otherwise null
+    private String range = null;
+
+    // The time the job was received by the node
+    private long receivedTime;
+
     /**
      * Create a new job with the supplied name and duration
      *
@@ -20,6 +33,8 @@ public class Job {
     public Job(String name, int duration) {
         this.name = name;
         this.duration = duration;
+
+        this.receivedTime = System.currentTimeMillis();
     }
 
     /**
@@ -36,11 +51,82 @@ public class Job {
         return this.duration;
     }
 
+    /**
+     * @return The amount of node capacity slots the job occupies while running
+     */
+    public int getWeight() {
+        return this.weight;
+    }
+
+    /**
+     * Set the amount of node capacity slots the job occupies while running
+     *
+     * @param weight The slot weight of the job, at least 1
+     */
+    public void setWeight(int weight) {
+        this.weight = weight;
+    }
+
+    /**
+     * @return The memory the job requires while running, in MB
+     */
+    public int getMemory() {
+        return this.memory;
+    }
+
+    /**
+     * Set the memory the job requires while running
+     *
+     * @param memory The required memory in MB
+     */
+    public void setMemory(int memory) {
+        this.memory = memory;
+    }
+
+    /**
+     * @return The scratch disk the job requires while running, in MB
+     */
+    public int getDisk() {
+        return this.disk;
+    }
+
+    /**
+     * Set the scratch disk the job requires while running
+     *
+     * @param disk The required scratch disk in MB
+     */
+    public void setDisk(int disk) {
+        this.disk = disk;
+    }
+
+    /**
+     * @return The part of the split job's work range the chunk covers, or null if the job isn't a chunk
+     */
+    public String getRange() {
+        return this.range;
+    }
+
+    /**
+     * Set the part of the split job's work range the chunk covers
+     *
+     * @param range The work range, as <start>-<end> in seconds
+     */
+    public void setRange(String range) {
+        this.range = range;
+    }
+
+    /**
+     * @return The time the job was received by the node, in milliseconds
+     */
+    public long getReceivedTime() {
+        return this.receivedTime;
+    }
+
     /**
      * @return The job formatted as a string of properties
      */
     @Override
     public String toString() {
-        return "Name: " + name + ", Duration: " + duration;
+        return "Name: " + name + ", Duration: " + duration + (weight != 1 ? ", Weight: " + weight : "") + (memory != 0 ? ", Memory: " + memory + "MB" : "") + (disk != 0 ? ", Disk: " + disk + "MB" : "") + (range != null ? ", Range: " + range : "");
     }
 }
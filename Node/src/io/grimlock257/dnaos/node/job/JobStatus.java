@@ -12,5 +12,6 @@ public enum JobStatus {
     IN_PROGRESS,
     COMPLETE,
     CANCELLED,
+    STOLEN,
     SENT
 }
@@ -5,6 +5,7 @@ import io.grimlock257.dnaos.node.job.JobStatus;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.function.ToIntFunction;
 
 /**
  * Job Manager for Node project
@@ -19,6 +20,10 @@ public class JobManager {
 
     private LinkedHashMap<Job, JobStatus> jobs;
 
+    // Total time spent queued by jobs started since the queueing delay was last taken, and how many jobs that covers
+    private long totalQueueDelay = 0;
+    private int queueDelaySamples = 0;
+
     /**
      * Job constructor
      */
@@ -59,17 +64,94 @@ public class JobManager {
     }
 
     /**
-     * Fetch the next queued job from the jobs LinkedHashMap.
+     * Fetch the next queued job from the jobs LinkedHashMap, providing the node has enough free slots, memory and
+     * scratch disk to run it.
+     *
+     * @param capacity The capacity of the node
+     * @param memory   The memory of the node in MB, 0 if not limited
+     * @param disk     The scratch disk of the node in MB, 0 if not limited
      *
-     * @return The next queued job as a Job object
+     * @return The next queued job as a Job object, or null if there are no queued jobs or not enough free resources
      */
-    public Job getNextJob() {
-        // Iterate through the jobs LinkedHashMap to find the next job with status 'jobs', once found
-        // set the status to 'IN_PROGRESS'
+    public Job getNextJob(int capacity, int memory, int disk) {
+        int freeSlots = capacity - getActiveSlots(capacity);
+        int freeMemory = memory - getActiveUsage(Job::getMemory);
+        int freeDisk = disk - getActiveUsage(Job::getDisk);
+
+        // Iterate through the jobs LinkedHashMap to find the next job with status 'QUEUED', once found, if there are
+        // enough free resources to run it set the status to 'IN_PROGRESS', otherwise it stays at the front of the queue
         for (Map.Entry<Job, JobStatus> jobDetails : jobs.entrySet()) {
             if (jobDetails.getValue() == JobStatus.QUEUED) {
+                Job job = jobDetails.getKey();
+
+                if (Math.min(job.getWeight(), capacity) > freeSlots || (memory > 0 && job.getMemory() > freeMemory) || (disk > 0 && job.getDisk() > freeDisk)) {
+                    return null;
+                }
+
                 jobDetails.setValue(JobStatus.IN_PROGRESS);
 
+                totalQueueDelay += System.currentTimeMillis() - jobDetails.getKey().getReceivedTime();
+                queueDelaySamples++;
+
+                return jobDetails.getKey();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Get the average time jobs spent queued before being started, since this method was last called. Jobs still
+     * waiting in the queue are included using how long they have waited so far, so a stalled queue is still noticed
+     *
+     * @return The average queueing delay in milliseconds, or 0 if no jobs have been queued
+     */
+    public double takeAverageQueueDelay() {
+        long delay = totalQueueDelay;
+        int samples = queueDelaySamples;
+
+        for (Map.Entry<Job, JobStatus> jobDetails : jobs.entrySet()) {
+            if (jobDetails.getValue() == JobStatus.QUEUED) {
+                delay += System.currentTimeMillis() - jobDetails.getKey().getReceivedTime();
+                samples++;
+            }
+        }
+
+        totalQueueDelay = 0;
+        queueDelaySamples = 0;
+
+        return samples > 0 ? delay / (double) samples : 0;
+    }
+
+    /**
+     * Fetch the most recently queued job from the jobs LinkedHashMap, this is the job that would wait the longest
+     * before being processed so is the best candidate to give up to another node
+     *
+     * @return The last queued job as a Job object, or null if no jobs are queued
+     */
+    public Job getLastQueuedJob() {
+        Job lastQueuedJob = null;
+
+        // Iterate through the jobs LinkedHashMap, keeping hold of the latest job with status 'QUEUED'
+        for (Map.Entry<Job, JobStatus> jobDetails : jobs.entrySet()) {
+            if (jobDetails.getValue() == JobStatus.QUEUED) {
+                lastQueuedJob = jobDetails.getKey();
+            }
+        }
+
+        return lastQueuedJob;
+    }
+
+    /**
+     * Find the queued job with the specified name
+     *
+     * @param jobName The name of the job to locate
+     *
+     * @return The queued job matching the name, or null if no such job is queued
+     */
+    public Job getQueuedJob(String jobName) {
+        for (Map.Entry<Job, JobStatus> jobDetails : jobs.entrySet()) {
+            if (jobDetails.getKey().getName().equals(jobName) && jobDetails.getValue() == JobStatus.QUEUED) {
                 return jobDetails.getKey();
             }
         }
@@ -85,38 +167,55 @@ public class JobManager {
     }
 
     /**
-     * Get the number of jobs that are currently in progress
+     * Get the number of capacity slots occupied by the jobs that are currently in progress. A job heavier than the
+     * whole node occupies the entire node
+     *
+     * @param capacity The capacity of the node
+     *
+     * @return The number of slots in use
+     */
+    public int getActiveSlots(int capacity) {
+        return getActiveUsage(job -> Math.min(job.getWeight(), capacity));
+    }
+
+    /**
+     * Tally a resource required by the jobs that are currently in progress
+     *
+     * @param resource The amount of the resource required by a job
      *
-     * @return The number of jobs in progress
+     * @return The amount of the resource in use
      */
-    public int getAmountOfActiveJobs() {
-        int amountOfJobs = 0;
+    public int getActiveUsage(ToIntFunction<Job> resource) {
+        int usage = 0;
 
         // Iterate through the jobs LinkedHashMap and see if the JobStatus is set to IN_PROGRESS
         for (Map.Entry<Job, JobStatus> jobDetails : jobs.entrySet()) {
             if (jobDetails.getValue() == JobStatus.IN_PROGRESS) {
-                amountOfJobs++;
+                usage += resource.applyAsInt(jobDetails.getKey());
             }
         }
 
-        return amountOfJobs;
+        return usage;
     }
 
     /**
-     * Find the specified job object in the jobs LinkedHashMap using the supplied name
+     * Find the specified job object in the jobs LinkedHashMap using the supplied name. If the name has been reused by
+     * a job received after an earlier one finished, the most recently received job is found
      *
      * @param jobName The name of the job to locate in the jobs LinkedHashMap
      *
      * @return The job object matching the name, or null if not found
      */
     public Job getByName(String jobName) {
+        Job job = null;
+
         for (Map.Entry<Job, JobStatus> jobDetails : jobs.entrySet()) {
             if (jobDetails.getKey().getName().equals(jobName)) {
-                return jobDetails.getKey();
+                job = jobDetails.getKey();
             }
         }
 
-        return null;
+        return job;
     }
 
     /**
@@ -1,15 +1,59 @@
 package io.grimlock257.dnaos.node.managers;
 
+import io.grimlock257.dnaos.node.message.Compression;
+import io.grimlock257.dnaos.node.message.OutboundQueue;
+import io.grimlock257.dnaos.node.message.PendingMessage;
+import io.grimlock257.dnaos.node.message.Reassembly;
+import io.grimlock257.dnaos.node.message.ReceiveStream;
+import io.grimlock257.dnaos.node.message.SendStream;
+import io.grimlock257.dnaos.node.message.SharedMemoryRing;
+import io.grimlock257.dnaos.node.message.TcpConnection;
+import io.grimlock257.dnaos.node.message.Transport;
+
+import java.io.File;
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Random;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.DataFormatException;
 
 /**
  * Message Manager for Node project
  * This class handles the sending and receiving of messages via UDP packets
+ * Messages are delivered reliably, each being sent as 'SEQ,<stream>,<sequence>,<message>' and retransmitted until the
+ * recipient replies 'ACK,<stream>,<received up to>[,<received beyond a gap>]', duplicates being dropped by the recipient
+ * Messages too large for one packet are sent as several messages 'FRAG,<message id>,<offset>,<length>,<fragment>',
+ * which the recipient reassembles before processing
+ * Messages over a size threshold are sent compressed as 'ZIP,<dictionary version>,<length>,<compressed message>' to a
+ * recipient which has offered to accept them by replying 'ACCEPT,<stream>,<dictionary version>' alongside its acks
+ * Packets are sent by a dedicated send thread from a queue per recipient, so sending never blocks the caller, and frames
+ * queued while the thread is busy are sent together in one packet as 'BATCH,<length>+<length>...,<frame><frame>...'
+ * Alternatively messages can be sent over persistent TCP connections as length prefixed frames, driven by a selector.
+ * Programs on the same host can instead write messages to each other through ring buffers in shared memory, one per
+ * sender and recipient, kept in a directory named after the recipient's port
+ * Messages are always received over UDP, TCP and shared memory on the same port, so each program can choose how it sends
  *
  * Adam Watson
  * Year 2 - Computer Systems Engineering
@@ -18,17 +62,118 @@ import java.util.LinkedList;
 public class MessageManager {
     private static MessageManager instance = null;
 
+    // The types of frame used for reliable delivery
+    private final String DATA_FRAME = "SEQ";
+    private final String ACK_FRAME = "ACK";
+    private final String FRAGMENT = "FRAG";
+    private final String BATCH = "BATCH";
+    private final String ACCEPT_FRAME = "ACCEPT";
+    private final String COMPRESSED = "ZIP";
+
+    // The shortest message compressed when sent over UDP, in characters, and the longest accepted once decompressed, in
+    // bytes
+    private final int COMPRESSION_THRESHOLD = 512;
+    private final int MAXIMUM_DECOMPRESSED_LENGTH = 64 * 1024 * 1024;
+
+    // The largest packet that can be received, and the most characters of a message sent in one packet
+    private final int MAXIMUM_PACKET_SIZE = 65_507;
+    private final int MAXIMUM_FRAGMENT_LENGTH = 1024;
+
+    // The most characters of frames to send together in one packet, within a typical ethernet MTU so batches aren't
+    // fragmented by IP
+    private final int MAXIMUM_BATCH_LENGTH = 1400;
+
+    // The most characters of large messages held while they are reassembled, and how long to wait for a missing fragment
+    private final int MAXIMUM_REASSEMBLY_LENGTH = 16 * 1024 * 1024;
+    private final int REASSEMBLY_TIMEOUT = 30 * 1000;
+
+    // How frequently to check for unacknowledged messages to retransmit
+    private final int RETRANSMIT_CHECK_INTERVAL = 50;
+
+    // How many times a message is sent before giving up on it being acknowledged
+    private final int MAXIMUM_ATTEMPTS = 8;
+
+    // The longest frame accepted over TCP, in bytes
+    private final int MAXIMUM_TCP_FRAME_LENGTH = 64 * 1024 * 1024;
+
+    // The size of each shared memory ring buffer in bytes, and how frequently to look for new rings or recipients
+    private final int SHARED_MEMORY_RING_CAPACITY = 1024 * 1024;
+    private final int SHARED_MEMORY_SCAN_INTERVAL = 500;
+
+    // How many times to spin checking the shared memory rings before parking between checks, and for how long to park,
+    // the park doubling each time nothing has arrived up to the longest park
+    private final int SHARED_MEMORY_SPINS = 10_000;
+    private final long SHARED_MEMORY_PARK_NANOS = 50_000;
+    private final long SHARED_MEMORY_MAXIMUM_PARK_NANOS = 2_000_000;
+
     private Thread receive;
     private DatagramSocket socket;
 
+    // The frames waiting to be sent to each recipient by address, and the log lines of what has been sent, both drained
+    // by the send thread
+    private Thread sendThread;
+    private HashMap<String, OutboundQueue> outboundQueues;
+    private LinkedList<String> pendingLogs;
+    private final Object outboundLock = new Object();
+
     private LinkedList<HashMap<String, Boolean>> messages;
     private final Object messageLock = new Object();
 
+    // The streams of messages sent to each recipient, by address and by stream id, and received from each sender
+    private HashMap<String, SendStream> sendStreams;
+    private HashMap<Long, SendStream> sendStreamIds;
+    private HashMap<Long, ReceiveStream> receiveStreams;
+    private final Object streamLock = new Object();
+
+    // Large messages being reassembled, by stream id and message id, and the id of the next large message to send
+    private HashMap<String, Reassembly> reassemblies;
+    private int reassemblyLength;
+    private long nextMessageId = 1;
+
+    private Random random;
+    private Timer retransmitTimer;
+
+    // The transport used to send messages
+    private Transport transport = Transport.UDP;
+
+    // The selector driving every TCP connection, the connections to each recipient by address, and new connections
+    // waiting to be registered with the selector by its event loop
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread tcpEventLoop;
+    private HashMap<String, TcpConnection> tcpConnections;
+    private LinkedList<TcpConnection> pendingConnections;
+
+    // The directory other programs on the host create rings to this program in, locked while this program is running,
+    // the rings to each recipient on the host by address, and when each recipient was last found not to be reachable
+    private File sharedMemoryDirectory;
+    private FileLock sharedMemoryLock;
+    private Thread sharedMemoryPoller;
+    private HashMap<String, SharedMemoryRing> sharedMemoryRings;
+    private HashMap<String, Long> sharedMemoryUnavailable;
+
+    // Delivery statistics, updated from the send, receive and retransmission threads
+    private final AtomicInteger retransmissions = new AtomicInteger();
+    private final AtomicInteger duplicatesSuppressed = new AtomicInteger();
+    private final AtomicInteger compressedMessages = new AtomicInteger();
+    private final AtomicLong compressionSaved = new AtomicLong();
+
     /**
      * MessageManager constructor
      */
     private MessageManager() {
         this.messages = new LinkedList<>();
+        this.outboundQueues = new HashMap<>();
+        this.pendingLogs = new LinkedList<>();
+        this.sendStreams = new HashMap<>();
+        this.sendStreamIds = new HashMap<>();
+        this.receiveStreams = new HashMap<>();
+        this.reassemblies = new HashMap<>();
+        this.tcpConnections = new HashMap<>();
+        this.pendingConnections = new LinkedList<>();
+        this.sharedMemoryRings = new HashMap<>();
+        this.sharedMemoryUnavailable = new HashMap<>();
+        this.random = new Random();
     }
 
     /**
@@ -45,31 +190,811 @@ public class MessageManager {
     }
 
     /**
-     * Setup the socket for the MessageManager to use, then start the receive thread
+     * Set the transport used to send messages, must be called before init
+     *
+     * @param transport The transport to send messages over
+     */
+    public void setTransport(Transport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * Setup the socket for the MessageManager to use, then start the send and receive threads, the retransmission timer,
+     * the TCP event loop listening on the same port as the socket and the poller of the shared memory rings to this program
      *
      * @param socket The socket to use when sending and receiving UDP packets
      */
     public void init(DatagramSocket socket) {
         this.socket = socket;
 
+        this.startSendThread();
         this.receive();
+        this.startRetransmitTimer();
+
+        try {
+            this.startTcpEventLoop(socket.getLocalPort());
+        } catch (IOException e) {
+            System.err.println("[ERROR] Could not listen for TCP connections on port " + socket.getLocalPort() + ", sending and receiving over UDP only");
+
+            this.transport = Transport.UDP;
+        }
+
+        try {
+            this.startSharedMemoryPoller(socket.getLocalPort());
+        } catch (IOException e) {
+            System.err.println("[ERROR] Could not receive over shared memory in '" + sharedMemoryDirectory + "', sending and receiving over shared memory disabled");
+
+            if (this.transport == Transport.SHM) {
+                this.transport = Transport.UDP;
+            }
+        }
+    }
+
+    /**
+     * Send a message over the chosen transport
+     *
+     * @param message The message to be sent
+     * @param address The address to send the message to
+     * @param port    The port to sent the message to
+     */
+    public void send(String message, InetAddress address, int port) {
+        if (transport == Transport.TCP) {
+            sendTcp(message, address, port);
+        } else if (transport == Transport.SHM) {
+            sendSharedMemory(message, address, port);
+        } else {
+            sendUdp(message, address, port);
+        }
     }
 
     /**
-     * Send a message as a UDP packet
+     * Send a message reliably as a UDP packet, retransmitting it until it is acknowledged. A message too large for one
+     * packet is split into fragments, each sent reliably in its own packet. A large message is compressed first if the
+     * recipient accepts compression
      *
      * @param message The message to be sent
      * @param address The address to send the packet to
      * @param port    The port to sent the packet to
      */
-    public void send(String message, InetAddress address, int port) {
+    private void sendUdp(String message, InetAddress address, int port) {
+        SendStream stream = getSendStream(address, port);
+        String payload = compress(stream, message);
+        String compressedNote = payload != message ? " compressed to " + payload.length() + " characters" : "";
+
+        if (payload.length() <= MAXIMUM_FRAGMENT_LENGTH) {
+            sendReliably(stream, payload);
+
+            log("[INFO] Sent message '" + message + "' to '" + address + ":" + port + "'" + compressedNote);
+
+            return;
+        }
+
+        long messageId;
+        int fragments = 0;
+
+        synchronized (streamLock) {
+            messageId = nextMessageId++;
+        }
+
+        for (int offset = 0; offset < payload.length(); ) {
+            int end = Math.min(payload.length(), offset + MAXIMUM_FRAGMENT_LENGTH);
+
+            // Never split a character represented by a surrogate pair across two fragments
+            if (end < payload.length() && Character.isHighSurrogate(payload.charAt(end - 1))) {
+                end--;
+            }
+
+            sendReliably(stream, FRAGMENT + "," + messageId + "," + offset + "," + payload.length() + "," + payload.substring(offset, end));
+
+            offset = end;
+            fragments++;
+        }
+
+        log("[INFO] Sent message '" + message + "' to '" + address + ":" + port + "'" + compressedNote + " in " + fragments + " fragments");
+    }
+
+    /**
+     * Compress a message to be sent on a stream, if it is long enough to be worth compressing and the recipient has
+     * accepted compression with the same dictionary. The compressed message is only used if it is actually shorter
+     *
+     * @param stream  The stream the message is to be sent on
+     * @param message The message to be sent
+     *
+     * @return The compressed message, or the message as it is if it isn't compressed
+     */
+    private String compress(SendStream stream, String message) {
+        if (message.length() < COMPRESSION_THRESHOLD || stream.getCompressionVersion() != Compression.VERSION) {
+            return message;
+        }
+
+        String compressed = COMPRESSED + "," + Compression.VERSION + "," + Compression.compress(message);
+
+        if (compressed.length() >= message.length()) {
+            return message;
+        }
+
+        compressedMessages.incrementAndGet();
+        compressionSaved.addAndGet(message.length() - compressed.length());
+
+        return compressed;
+    }
+
+    /**
+     * Send a message as a frame over the TCP connection to the recipient, opening the connection if there isn't one
+     *
+     * @param message The message to be sent
+     * @param address The address to send the message to
+     * @param port    The port to sent the message to
+     */
+    private void sendTcp(String message, InetAddress address, int port) {
+        synchronized (streamLock) {
+            TcpConnection connection = tcpConnections.get(address.getHostAddress() + ":" + port);
+
+            if (connection == null) {
+                try {
+                    SocketChannel channel = SocketChannel.open();
+                    channel.configureBlocking(false);
+                    channel.connect(new InetSocketAddress(address, port));
+
+                    connection = new TcpConnection(channel, address, port);
+                    tcpConnections.put(address.getHostAddress() + ":" + port, connection);
+                    pendingConnections.add(connection);
+                } catch (IOException e) {
+                    System.err.println("[ERROR] Could not open a TCP connection to '" + address + ":" + port + "', sending over UDP instead");
+
+                    sendUdp(message, address, port);
+
+                    return;
+                }
+            }
+
+            connection.queue(message);
+        }
+
+        // Wake the event loop so it registers any new connection and writes the frame
+        selector.wakeup();
+
+        log("[INFO] Sent message '" + message + "' to '" + address + ":" + port + "' over TCP");
+    }
+
+    /**
+     * Open a TCP server channel on the supplied port and start the event loop which accepts, connects, reads and
+     * writes every TCP connection as the selector finds them ready
+     *
+     * @param port The port to listen for TCP connections on
+     *
+     * @throws IOException When the server channel can't be opened
+     */
+    private void startTcpEventLoop(int port) throws IOException {
+        selector = Selector.open();
+
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        tcpEventLoop = new Thread("node_tcp_event_loop") {
+            public void run() {
+                while (!interrupted()) {
+                    try {
+                        selector.select();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+
+                        return;
+                    }
+
+                    registerPendingConnections();
+
+                    Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+
+                    while (selectedKeys.hasNext()) {
+                        SelectionKey key = selectedKeys.next();
+                        selectedKeys.remove();
+
+                        processTcpEvent(key);
+                    }
+                }
+            }
+        };
+
+        tcpEventLoop.start();
+    }
+
+    /**
+     * Register the connections opened since the event loop last ran with the selector, and make sure every connection
+     * with frames queued is waiting to be written to
+     */
+    private void registerPendingConnections() {
+        synchronized (streamLock) {
+            while (!pendingConnections.isEmpty()) {
+                TcpConnection connection = pendingConnections.poll();
+
+                try {
+                    connection.getChannel().register(selector, SelectionKey.OP_CONNECT, connection);
+                } catch (IOException e) {
+                    closeTcpConnection(connection);
+                }
+            }
+
+            for (TcpConnection connection : tcpConnections.values()) {
+                SelectionKey key = connection.getChannel().keyFor(selector);
+
+                if (key != null && key.isValid() && connection.getChannel().isConnected() && connection.hasQueued()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+            }
+        }
+    }
+
+    /**
+     * Handle a TCP channel the selector has found ready, accepting a new connection, completing a connection, adding
+     * any messages received to the messages LinkedList, or writing queued frames
+     *
+     * @param key The selection key of the ready channel
+     */
+    private void processTcpEvent(SelectionKey key) {
+        TcpConnection connection = (TcpConnection) key.attachment();
+
         try {
-            DatagramPacket packet = new DatagramPacket(message.getBytes(), message.getBytes().length, address, port);
-            socket.send(packet);
+            if (key.isAcceptable()) {
+                SocketChannel channel = serverChannel.accept();
+
+                if (channel != null) {
+                    channel.configureBlocking(false);
+                    channel.register(selector, SelectionKey.OP_READ, new TcpConnection(channel, null, 0));
+                }
+
+                return;
+            }
+
+            if (key.isConnectable()) {
+                connection.getChannel().finishConnect();
+                key.interestOps(SelectionKey.OP_READ | (connection.hasQueued() ? SelectionKey.OP_WRITE : 0));
+            }
+
+            if (key.isValid() && key.isReadable()) {
+                ArrayList<String> receivedMessages = connection.read(MAXIMUM_TCP_FRAME_LENGTH);
 
-            System.out.println("[INFO] Sent message '" + message + "' to '" + address + ":" + port + "'");
+                if (receivedMessages == null) {
+                    closeTcpConnection(connection);
+
+                    return;
+                }
+
+                for (String message : receivedMessages) {
+                    if (message.trim().length() > 0) {
+                        addMessage(message.trim());
+                    }
+                }
+            }
+
+            if (key.isValid() && key.isWritable()) {
+                connection.write();
+
+                // Stop waiting to write once every queued frame has been written
+                if (!connection.hasQueued()) {
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            }
         } catch (IOException e) {
-            System.err.println("[ERROR] The packet could not be sent due to IOException");
+            closeTcpConnection(connection);
+        }
+    }
+
+    /**
+     * Close a TCP connection which has failed or been closed by the other program. Messages that hadn't started to be
+     * written are sent over UDP instead, and the next message to the recipient opens a new connection
+     *
+     * @param connection The connection to close
+     */
+    private void closeTcpConnection(TcpConnection connection) {
+        connection.close();
+
+        if (connection.getAddr() == null) {
+            return;
+        }
+
+        synchronized (streamLock) {
+            tcpConnections.remove(connection.getAddr().getHostAddress() + ":" + connection.getPort(), connection);
+        }
+
+        ArrayList<String> unsentMessages = connection.drainUnsent();
+
+        System.err.println("[ERROR] TCP connection to '" + connection.getAddr() + ":" + connection.getPort() + "' closed" + (!unsentMessages.isEmpty() ? ", sending " + unsentMessages.size() + " queued messages over UDP instead" : ""));
+
+        for (String message : unsentMessages) {
+            sendUdp(message, connection.getAddr(), connection.getPort());
+        }
+    }
+
+    /**
+     * Write a message to the shared memory ring to the recipient if it is running on the same host, otherwise, or if
+     * the message doesn't fit in the ring, send it reliably over UDP
+     *
+     * @param message The message to be sent
+     * @param address The address to send the message to
+     * @param port    The port to sent the message to
+     */
+    private void sendSharedMemory(String message, InetAddress address, int port) {
+        SharedMemoryRing ring = getSharedMemoryRing(address, port);
+
+        if (ring != null && ring.offer(message)) {
+            log("[INFO] Sent message '" + message + "' to '" + address + ":" + port + "' over shared memory");
+
+            return;
+        }
+
+        sendUdp(message, address, port);
+    }
+
+    /**
+     * Get the shared memory ring to a recipient, creating it if the recipient is running on the same host and
+     * receiving over shared memory. Recipients which aren't are only checked again once the scan interval has passed
+     *
+     * @param address The address of the recipient
+     * @param port    The port of the recipient
+     *
+     * @return The ring to the recipient, or null if the recipient can't be reached over shared memory
+     */
+    private SharedMemoryRing getSharedMemoryRing(InetAddress address, int port) {
+        String key = address.getHostAddress() + ":" + port;
+
+        synchronized (streamLock) {
+            SharedMemoryRing ring = sharedMemoryRings.get(key);
+
+            if (ring != null) {
+                return ring;
+            }
+
+            Long lastChecked = sharedMemoryUnavailable.get(key);
+
+            if (lastChecked != null && System.currentTimeMillis() - lastChecked < SHARED_MEMORY_SCAN_INTERVAL) {
+                return null;
+            }
+
+            File directory = getSharedMemoryDirectory(port);
+
+            if (!isLocalAddress(address) || !isReceivingSharedMemory(directory)) {
+                sharedMemoryUnavailable.put(key, System.currentTimeMillis());
+
+                return null;
+            }
+
+            try {
+                ring = SharedMemoryRing.create(new File(directory, socket.getLocalPort() + "_" + Long.toHexString(random.nextLong()) + ".ring"), SHARED_MEMORY_RING_CAPACITY);
+            } catch (IOException e) {
+                System.err.println("[ERROR] Could not create a shared memory ring to '" + address + ":" + port + "', sending over UDP instead");
+
+                sharedMemoryUnavailable.put(key, System.currentTimeMillis());
+
+                return null;
+            }
+
+            // Remove the ring when this program exits, so it isn't left holding memory
+            ring.getFile().deleteOnExit();
+
+            sharedMemoryRings.put(key, ring);
+            sharedMemoryUnavailable.remove(key);
+
+            System.out.println("[INFO] Created shared memory ring '" + ring.getFile() + "' to '" + address + ":" + port + "'");
+
+            return ring;
+        }
+    }
+
+    /**
+     * Get the directory rings to the program on the supplied port are created in, under /dev/shm where it exists so
+     * the rings are only ever held in memory
+     *
+     * @param port The port of the program
+     *
+     * @return The directory
+     */
+    private File getSharedMemoryDirectory(int port) {
+        File sharedMemory = new File("/dev/shm");
+
+        return new File(sharedMemory.isDirectory() ? sharedMemory : new File(System.getProperty("java.io.tmpdir")), "dnaos_" + port);
+    }
+
+    /**
+     * Check whether an address belongs to this host
+     *
+     * @param address The address to check
+     *
+     * @return Whether or not the address is one of this host's
+     */
+    private boolean isLocalAddress(InetAddress address) {
+        if (address.isLoopbackAddress() || address.isAnyLocalAddress()) {
+            return true;
+        }
+
+        try {
+            return NetworkInterface.getByInetAddress(address) != null;
+        } catch (SocketException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Check whether the program a shared memory directory belongs to is running, by whether it holds the lock on the
+     * directory's lock file
+     *
+     * @param directory The shared memory directory of the program
+     *
+     * @return Whether or not the program is receiving over shared memory
+     */
+    private boolean isReceivingSharedMemory(File directory) {
+        File lockFile = new File(directory, "lock");
+
+        if (!lockFile.exists()) {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.WRITE)) {
+            FileLock lock = channel.tryLock();
+
+            if (lock == null) {
+                return true;
+            }
+
+            lock.release();
+
+            return false;
+        } catch (OverlappingFileLockException e) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Create and lock this program's shared memory directory, removing any rings left over from a previous run, and
+     * start the thread which polls the rings other programs create in it. The poller spins while messages are
+     * arriving so a message is picked up as soon as it is written, and parks for longer and longer between checks once
+     * idle. Until another program creates a ring the poller only wakes to scan the directory
+     *
+     * @param port The port of this program
+     *
+     * @throws IOException When the directory can't be created or is locked by another program
+     */
+    private void startSharedMemoryPoller(int port) throws IOException {
+        sharedMemoryDirectory = getSharedMemoryDirectory(port);
+
+        if (!sharedMemoryDirectory.isDirectory() && !sharedMemoryDirectory.mkdirs()) {
+            throw new IOException("Could not create '" + sharedMemoryDirectory + "'");
+        }
+
+        FileChannel lockChannel = FileChannel.open(new File(sharedMemoryDirectory, "lock").toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        sharedMemoryLock = lockChannel.tryLock();
+
+        if (sharedMemoryLock == null) {
+            lockChannel.close();
+
+            throw new IOException("'" + sharedMemoryDirectory + "' is locked by another program");
+        }
+
+        File[] staleRings = sharedMemoryDirectory.listFiles((directory, name) -> name.endsWith(".ring") || name.endsWith(".ring.tmp"));
+
+        if (staleRings != null) {
+            for (File staleRing : staleRings) {
+                staleRing.delete();
+            }
+        }
+
+        sharedMemoryPoller = new Thread("node_shared_memory_poller") {
+            public void run() {
+                HashMap<File, SharedMemoryRing> rings = new HashMap<>();
+                long lastScan = 0;
+                int idleChecks = 0;
+                long parkNanos = SHARED_MEMORY_PARK_NANOS;
+
+                while (!interrupted()) {
+                    if (System.currentTimeMillis() - lastScan >= SHARED_MEMORY_SCAN_INTERVAL) {
+                        scanSharedMemoryRings(rings);
+                        lastScan = System.currentTimeMillis();
+                    }
+
+                    boolean received = false;
+
+                    for (SharedMemoryRing ring : rings.values()) {
+                        for (String message : ring.poll()) {
+                            if (message.trim().length() > 0) {
+                                addMessage(message.trim());
+                            }
+
+                            received = true;
+                        }
+                    }
+
+                    if (received) {
+                        idleChecks = 0;
+                        parkNanos = SHARED_MEMORY_PARK_NANOS;
+                    } else if (rings.isEmpty()) {
+                        // Nothing can arrive until another program creates a ring, which is found by the next scan
+                        LockSupport.parkNanos(Math.max(1, lastScan + SHARED_MEMORY_SCAN_INTERVAL - System.currentTimeMillis()) * 1_000_000L);
+                    } else if (++idleChecks < SHARED_MEMORY_SPINS) {
+                        Thread.onSpinWait();
+                    } else {
+                        LockSupport.parkNanos(parkNanos);
+                        parkNanos = Math.min(SHARED_MEMORY_MAXIMUM_PARK_NANOS, parkNanos * 2);
+                    }
+                }
+            }
+        };
+
+        sharedMemoryPoller.start();
+    }
+
+    /**
+     * Open any rings created in this program's shared memory directory since it was last scanned, and forget the rings
+     * whose sender has removed them once everything in them has been read
+     *
+     * @param rings The rings being polled, by file
+     */
+    private void scanSharedMemoryRings(HashMap<File, SharedMemoryRing> rings) {
+        File[] files = sharedMemoryDirectory.listFiles((directory, name) -> name.endsWith(".ring"));
+
+        if (files != null) {
+            for (File file : files) {
+                if (!rings.containsKey(file)) {
+                    try {
+                        rings.put(file, SharedMemoryRing.open(file));
+                    } catch (IOException e) {
+                        System.err.println("[ERROR] Could not open shared memory ring '" + file + "'");
+                    }
+                }
+            }
+        }
+
+        rings.values().removeIf(ring -> !ring.getFile().exists() && !ring.hasUnread());
+    }
+
+    /**
+     * Number a message on a stream and send it, keeping it to be retransmitted until it is acknowledged
+     *
+     * @param stream  The stream to send the message on
+     * @param message The message to be sent
+     */
+    private void sendReliably(SendStream stream, String message) {
+        PendingMessage pendingMessage = stream.addMessage(message);
+
+        // A message held until there is room in the window is sent once the messages ahead of it are acknowledged
+        if (pendingMessage != null) {
+            sendData(stream, pendingMessage);
+        }
+    }
+
+    /**
+     * Send the held messages on a stream which now fit in the window, after messages in flight have been acknowledged
+     * or given up on
+     *
+     * @param stream The stream to send the messages on
+     */
+    private void sendHeldMessages(SendStream stream) {
+        for (PendingMessage pendingMessage : stream.releaseHeldMessages()) {
+            sendData(stream, pendingMessage);
+        }
+    }
+
+    /**
+     * Queue the data frame of a numbered message to be sent
+     *
+     * @param stream         The stream the message is sent on
+     * @param pendingMessage The numbered message
+     */
+    private void sendData(SendStream stream, PendingMessage pendingMessage) {
+        sendFrame(DATA_FRAME + "," + stream.getId() + "," + pendingMessage.getSequence() + "," + pendingMessage.getMessage(), stream.getAddr(), stream.getPort());
+    }
+
+    /**
+     * Queue a frame to be sent over UDP by the send thread
+     *
+     * @param frame   The frame to be sent
+     * @param address The address to send the packet to
+     * @param port    The port to sent the packet to
+     */
+    private void sendFrame(String frame, InetAddress address, int port) {
+        sendFrame(frame, address, port, null);
+    }
+
+    /**
+     * Queue a frame to be sent over UDP by the send thread, replacing any frame to the same recipient still waiting to
+     * be sent which the new frame supersedes
+     *
+     * @param frame      The frame to be sent
+     * @param address    The address to send the packet to
+     * @param port       The port to sent the packet to
+     * @param supersedes The start of the frames the new frame replaces, or null if it replaces none
+     */
+    private void sendFrame(String frame, InetAddress address, int port, String supersedes) {
+        synchronized (outboundLock) {
+            outboundQueues.computeIfAbsent(address.getHostAddress() + ":" + port, k -> new OutboundQueue(address, port)).add(frame, supersedes);
+            outboundLock.notify();
+        }
+    }
+
+    /**
+     * Queue a line to be logged by the send thread, so the caller isn't held up writing to the console
+     *
+     * @param line The line to log
+     */
+    private void log(String line) {
+        synchronized (outboundLock) {
+            pendingLogs.add(line);
+            outboundLock.notify();
+        }
+    }
+
+    /**
+     * @return Whether or not any frames are waiting to be sent, must be called holding the outbound lock
+     */
+    private boolean hasOutboundFrames() {
+        for (OutboundQueue queue : outboundQueues.values()) {
+            if (!queue.isEmpty()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Creates a thread that sends the queued frames as UDP packets. Every time it wakes the thread takes everything
+     * queued, packing the frames to each recipient into as few packets as possible, then sends them and logs the lines
+     * queued alongside them
+     */
+    private void startSendThread() {
+        sendThread = new Thread("node_send_thread") {
+            public void run() {
+                while (!interrupted()) {
+                    ArrayList<DatagramPacket> packets = new ArrayList<>();
+                    ArrayList<String> logs;
+
+                    synchronized (outboundLock) {
+                        try {
+                            while (!hasOutboundFrames() && pendingLogs.isEmpty()) {
+                                outboundLock.wait();
+                            }
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+
+                        for (OutboundQueue queue : outboundQueues.values()) {
+                            for (String packet : queue.drainPackets(MAXIMUM_BATCH_LENGTH)) {
+                                byte[] data = packet.getBytes(StandardCharsets.UTF_8);
+
+                                packets.add(new DatagramPacket(data, data.length, queue.getAddr(), queue.getPort()));
+                            }
+                        }
+
+                        logs = new ArrayList<>(pendingLogs);
+                        pendingLogs.clear();
+                    }
+
+                    for (DatagramPacket packet : packets) {
+                        try {
+                            socket.send(packet);
+                        } catch (IOException e) {
+                            System.err.println("[ERROR] The packet could not be sent due to IOException");
+                        }
+                    }
+
+                    for (String line : logs) {
+                        System.out.println(line);
+                    }
+                }
+            }
+        };
+
+        sendThread.start();
+    }
+
+    /**
+     * Get the stream of messages sent to a recipient, starting a new stream if none have been sent yet
+     *
+     * @param address The address of the recipient
+     * @param port    The port of the recipient
+     *
+     * @return The stream of messages to the recipient
+     */
+    private SendStream getSendStream(InetAddress address, int port) {
+        synchronized (streamLock) {
+            SendStream stream = sendStreams.get(address.getHostAddress() + ":" + port);
+
+            if (stream == null) {
+                long id;
+
+                do {
+                    id = random.nextLong() & Long.MAX_VALUE;
+                } while (sendStreamIds.containsKey(id));
+
+                stream = new SendStream(id, address, port);
+                sendStreams.put(address.getHostAddress() + ":" + port, stream);
+                sendStreamIds.put(id, stream);
+            }
+
+            return stream;
+        }
+    }
+
+    /**
+     * Start a timer which periodically retransmits any message that has gone unacknowledged for longer than the
+     * retransmission timeout of its stream, giving up on a message once it has been sent too many times
+     */
+    private void startRetransmitTimer() {
+        retransmitTimer = new Timer("node_retransmit_timer", true);
+
+        retransmitTimer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                ArrayList<SendStream> streams;
+
+                synchronized (streamLock) {
+                    streams = new ArrayList<>(sendStreams.values());
+                }
+
+                for (SendStream stream : streams) {
+                    for (PendingMessage pendingMessage : stream.getDueRetransmissions()) {
+                        if (pendingMessage.getAttempts() > MAXIMUM_ATTEMPTS) {
+                            stream.abandon(pendingMessage.getSequence());
+
+                            System.err.println("[ERROR] Message '" + pendingMessage.getMessage() + "' to '" + stream.getAddr() + ":" + stream.getPort() + "' was never acknowledged, giving up");
+                        } else {
+                            sendData(stream, pendingMessage);
+                            retransmissions.incrementAndGet();
+
+                            log("[INFO] Retransmitted message '" + pendingMessage.getMessage() + "' to '" + stream.getAddr() + ":" + stream.getPort() + "' (attempt " + pendingMessage.getAttempts() + ")");
+                        }
+                    }
+
+                    sendHeldMessages(stream);
+                }
+
+                expireReassemblies();
+            }
+        }, RETRANSMIT_CHECK_INTERVAL, RETRANSMIT_CHECK_INTERVAL);
+    }
+
+    /**
+     * Wait for every message sent to be acknowledged, written when sent over TCP, or read when sent over shared memory,
+     * so that messages sent just before shutting down aren't lost
+     *
+     * @param timeout The longest time to wait, in milliseconds
+     */
+    public void flush(long timeout) {
+        long deadline = System.currentTimeMillis() + timeout;
+
+        while (System.currentTimeMillis() < deadline) {
+            boolean unacknowledged = false;
+
+            synchronized (streamLock) {
+                for (SendStream stream : sendStreams.values()) {
+                    unacknowledged |= stream.hasUnacknowledged();
+                }
+
+                for (TcpConnection connection : tcpConnections.values()) {
+                    unacknowledged |= connection.hasQueued();
+                }
+
+                for (SharedMemoryRing ring : sharedMemoryRings.values()) {
+                    unacknowledged |= ring.hasUnread();
+                }
+            }
+
+            synchronized (outboundLock) {
+                unacknowledged |= hasOutboundFrames();
+            }
+
+            if (!unacknowledged) {
+                return;
+            }
+
+            try {
+                Thread.sleep(RETRANSMIT_CHECK_INTERVAL);
+            } catch (InterruptedException e) {
+                return;
+            }
         }
     }
 
@@ -82,24 +1007,23 @@ public class MessageManager {
         receive = new Thread("node_receive_thread") {
             public void run() {
                 while (!interrupted()) {
-                    // Byte buffer to store the message
-                    byte[] buffer = new byte[2048];
+                    // Byte buffer to store the message, large enough for any UDP packet so nothing is truncated
+                    byte[] buffer = new byte[MAXIMUM_PACKET_SIZE];
+                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
 
                     // Try receive the packet from the socket into the byte array
                     try {
-                        socket.receive(new DatagramPacket(buffer, buffer.length));
+                        socket.receive(packet);
                     } catch (IOException e) {
                         e.printStackTrace();
                     }
 
-                    // Store the message into the LinkedList of messages, assuming the message length isn't 0
-                    String message = new String(buffer).trim();
-                    if (message.length() > 0) {
-                        HashMap<String, Boolean> newMsg = new HashMap<String, Boolean>() {{
-                            put(message, false);
-                        }};
-
-                        addMessage(newMsg);
+                    // Process the frame, or each frame of a batch, assuming the message length isn't 0
+                    String message = new String(buffer, 0, packet.getLength(), StandardCharsets.UTF_8);
+                    if (message.startsWith(BATCH + ",")) {
+                        receiveBatch(message, packet.getAddress(), packet.getPort());
+                    } else if (message.trim().length() > 0) {
+                        receiveFrame(message, packet.getAddress(), packet.getPort());
                     }
                 }
             }
@@ -108,18 +1032,231 @@ public class MessageManager {
         receive.start();
     }
 
+    /**
+     * Split a received batch into its frames and process each in turn
+     *
+     * @param batch   The received batch, 'BATCH,<length>+<length>...,<frame><frame>...'
+     * @param address The address the batch was received from
+     * @param port    The port the batch was received from
+     */
+    private void receiveBatch(String batch, InetAddress address, int port) {
+        int framesStart = batch.indexOf(',', BATCH.length() + 1) + 1;
+
+        try {
+            if (framesStart == 0) {
+                throw new NumberFormatException();
+            }
+
+            int offset = framesStart;
+
+            for (String length : batch.substring(BATCH.length() + 1, framesStart - 1).split("\\+")) {
+                String frame = batch.substring(offset, offset + Integer.parseInt(length));
+                offset += frame.length();
+
+                receiveFrame(frame, address, port);
+            }
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            System.err.println("[ERROR] Received malformed batch from '" + address + ":" + port + "', discarding");
+        }
+    }
+
+    /**
+     * Process a received frame. An acknowledgement is passed to the stream it acknowledges, whereas a message is
+     * acknowledged and then added to the messages LinkedList, unless it is a duplicate of a message already received
+     *
+     * @param frame   The received frame
+     * @param address The address the frame was received from
+     * @param port    The port the frame was received from
+     */
+    private void receiveFrame(String frame, InetAddress address, int port) {
+        String[] args = frame.split(",", 4);
+
+        try {
+            if (args[0].equals(ACK_FRAME) && args.length >= 3) {
+                SendStream stream;
+
+                synchronized (streamLock) {
+                    stream = sendStreamIds.get(Long.parseLong(args[1]));
+                }
+
+                if (stream != null) {
+                    ArrayList<Long> selective = new ArrayList<>();
+
+                    if (args.length == 4) {
+                        for (String sequence : args[3].split("\\+")) {
+                            selective.add(Long.parseLong(sequence));
+                        }
+                    }
+
+                    stream.acknowledge(Long.parseLong(args[2]), selective);
+                    sendHeldMessages(stream);
+                }
+            } else if (args[0].equals(ACCEPT_FRAME) && args.length >= 3) {
+                SendStream stream;
+
+                synchronized (streamLock) {
+                    stream = sendStreamIds.get(Long.parseLong(args[1]));
+                }
+
+                if (stream != null) {
+                    stream.setCompressionVersion(Integer.parseInt(args[2]));
+                }
+            } else if (args[0].equals(DATA_FRAME) && args.length == 4) {
+                long id = Long.parseLong(args[1]);
+                ReceiveStream stream;
+
+                synchronized (streamLock) {
+                    stream = receiveStreams.computeIfAbsent(id, ReceiveStream::new);
+                }
+
+                boolean isNew = stream.receive(Long.parseLong(args[2]));
+
+                // Acknowledge duplicates too, as the previous acknowledgement may have been lost. The acknowledgement
+                // covers everything received on the stream, so it replaces any older one still waiting to be sent
+                sendFrame(ACK_FRAME + "," + stream.toAckArgs(), address, port, ACK_FRAME + "," + id + ",");
+
+                // Offer to accept compressed messages until the sender starts compressing, in case an offer is lost
+                if (stream.offerCompression(MAXIMUM_ATTEMPTS)) {
+                    sendFrame(ACCEPT_FRAME + "," + id + "," + Compression.VERSION, address, port, ACCEPT_FRAME + "," + id + ",");
+                }
+
+                if (isNew && args[3].startsWith(FRAGMENT + ",")) {
+                    receiveFragment(stream, args[3]);
+                } else if (isNew) {
+                    deliver(stream, args[3].trim());
+                } else {
+                    duplicatesSuppressed.incrementAndGet();
+                }
+            } else {
+                // A message sent without reliable delivery is processed as it is
+                addMessage(frame.trim());
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("[ERROR] Received malformed frame '" + frame + "', discarding");
+        }
+    }
+
+    /**
+     * Add a fragment of a large message to its reassembly, adding the message to the messages LinkedList once every
+     * fragment has been received. A message which would take the reassemblies beyond their memory bound is discarded
+     *
+     * @param stream   The stream the fragment was received on
+     * @param fragment The fragment message, 'FRAG,<message id>,<offset>,<length>,<fragment>'
+     */
+    private void receiveFragment(ReceiveStream stream, String fragment) {
+        String[] args = fragment.split(",", 5);
+
+        if (args.length != 5) {
+            System.err.println("[ERROR] Received malformed fragment, discarding");
+
+            return;
+        }
+
+        String key = stream.getId() + ":" + args[1];
+        int offset = Integer.parseInt(args[2]);
+        int length = Integer.parseInt(args[3]);
+        String completeMessage = null;
+
+        synchronized (streamLock) {
+            Reassembly reassembly = reassemblies.get(key);
+
+            if (reassembly == null) {
+                if (length < 0 || reassemblyLength + length > MAXIMUM_REASSEMBLY_LENGTH) {
+                    System.err.println("[ERROR] Not enough room to reassemble a message of length " + length + ", discarding");
+
+                    return;
+                }
+
+                reassembly = new Reassembly(length);
+                reassemblies.put(key, reassembly);
+                reassemblyLength += length;
+            }
+
+            if (!reassembly.addFragment(offset, args[4])) {
+                System.err.println("[ERROR] Received fragment outside of its message, discarding");
+
+                return;
+            }
+
+            if (reassembly.isComplete()) {
+                reassemblies.remove(key);
+                reassemblyLength -= reassembly.getLength();
+
+                completeMessage = reassembly.getMessage();
+            }
+        }
+
+        if (completeMessage != null) {
+            deliver(stream, completeMessage.trim());
+        }
+    }
+
+    /**
+     * Add a message received on a stream to the messages LinkedList, decompressing it first if it was compressed
+     *
+     * @param stream  The stream the message was received on
+     * @param message The received message
+     */
+    private void deliver(ReceiveStream stream, String message) {
+        if (!message.startsWith(COMPRESSED + ",")) {
+            addMessage(message);
+
+            return;
+        }
+
+        stream.recordCompressionUsed();
+
+        String[] args = message.split(",", 3);
+
+        try {
+            if (args.length != 3 || Integer.parseInt(args[1]) != Compression.VERSION) {
+                throw new DataFormatException("Unknown compression dictionary");
+            }
+
+            addMessage(Compression.decompress(args[2], MAXIMUM_DECOMPRESSED_LENGTH).trim());
+        } catch (NumberFormatException | DataFormatException e) {
+            System.err.println("[ERROR] Received malformed compressed message, discarding");
+        }
+    }
+
+    /**
+     * Discard any large message which has not received a fragment for longer than the reassembly timeout, as its
+     * remaining fragments are never going to arrive
+     */
+    private void expireReassemblies() {
+        long now = System.currentTimeMillis();
+
+        synchronized (streamLock) {
+            Iterator<Reassembly> iterator = reassemblies.values().iterator();
+
+            while (iterator.hasNext()) {
+                Reassembly reassembly = iterator.next();
+
+                if (now - reassembly.getLastReceived() > REASSEMBLY_TIMEOUT) {
+                    iterator.remove();
+                    reassemblyLength -= reassembly.getLength();
+
+                    System.err.println("[ERROR] Message of length " + reassembly.getLength() + " was never fully received, discarding");
+                }
+            }
+        }
+    }
+
     /**
      * Add a message in the form of a HashMap<message, hasRead> to the messages LinkedList
      *
      * @param message The message to add to the messages LinkedList
      */
-    private void addMessage(HashMap<String, Boolean> message) {
+    private void addMessage(String message) {
+        HashMap<String, Boolean> newMsg = new HashMap<String, Boolean>() {{
+            put(message, false);
+        }};
+
         // Lock the messagesLock so that only one thread may access the messages LinkedList at any one time
         synchronized (messageLock) {
-            messages.add(message);
+            messages.add(newMsg);
         }
     }
-
     /**
      * Get the LinkedList of messages
      *
@@ -159,9 +1296,53 @@ public class MessageManager {
     }
 
     /**
-     * Stop the receive thread
+     * Used to display the delivery statistics in a nice, readable format
+     *
+     * @return The formatted string
+     */
+    @Override
+    public String toString() {
+        int unacknowledged = 0;
+
+        synchronized (streamLock) {
+            for (SendStream stream : sendStreams.values()) {
+                unacknowledged += stream.getUnacknowledgedCount();
+            }
+
+            return "Transport: " + transport + ", TCP Connections: " + tcpConnections.size() + ", Shared Memory Rings: " + sharedMemoryRings.size() + ", Streams Sent: " + sendStreams.size() + ", Streams Received: " + receiveStreams.size() + ", Unacknowledged: " + unacknowledged + ", Retransmissions: " + retransmissions.get() + ", Duplicates Suppressed: " + duplicatesSuppressed.get() + ", Compressed: " + compressedMessages.get() + " (saved " + compressionSaved.get() + " characters)";
+        }
+    }
+
+    /**
+     * Stop the send and receive threads, the retransmission timer, the TCP event loop and the shared memory poller, removing
+     * the rings this program created and releasing its shared memory directory
      */
     public void stop() {
+        sendThread.interrupt();
         receive.interrupt();
+        retransmitTimer.cancel();
+
+        if (tcpEventLoop != null) {
+            tcpEventLoop.interrupt();
+            selector.wakeup();
+        }
+
+        if (sharedMemoryPoller != null) {
+            sharedMemoryPoller.interrupt();
+
+            synchronized (streamLock) {
+                for (SharedMemoryRing ring : sharedMemoryRings.values()) {
+                    ring.getFile().delete();
+                }
+
+                sharedMemoryRings.clear();
+            }
+
+            try {
+                sharedMemoryLock.channel().close();
+            } catch (IOException ignored) {
+                // The lock is released when the program exits either way
+            }
+        }
     }
 }
@@ -0,0 +1,137 @@
+package io.grimlock257.dnaos.node.message;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses messages within the Node project
+ * Messages are deflated with a preset dictionary of the text which appears throughout the data dumps and job messages,
+ * so even the first line of a message compresses well, then encoded as Base64 so the result can be sent as text. The
+ * dictionary is identical in every project, and its version is agreed with each recipient before compressing for it
+ *
+ * Adam Watson
+ * Year 2 - Computer Systems Engineering
+ * Distributed Network Architecture & Operating Systems Module CW-2
+ */
+public class Compression {
+    // The version of the dictionary, changed whenever the dictionary changes so it is never used with another version
+    public static final int VERSION = 1;
+
+    // Text common to the messages, with the most common last as deflate encodes nearer matches in fewer bits
+    private static final byte[] DICTIONARY = String.join("",
+            "DATA_DUMP_LOAD_BALANCER,DATA_DUMP_NODE,DATA_DUMP_NODE_FAILURE,NEW_JOB,NEW_JOB_GROUP,COMPLETE_JOB,GROUP_PROGRESS,",
+            "\n[INFO] Current client:\nAddress: /127.0.0.1, Port: \n\n[INFO] Current nodes:\n",
+            "\n\n[INFO] Node speed estimates:\n, Benchmark Score: , Speed Factor: , Completed Jobs: ",
+            "\n\n[INFO] Job duration predictions:\n\n\n[INFO] User resource shares:\n\n\n[INFO] Result cache:\n",
+            "Cached Results: , TTL: 300s, Cache Hits: 0, In Flight: 0, Coalesced: 0",
+            "\n\n[INFO] Deadlines:\n\n\n[INFO] Job groups:\n, Size: , Completed: , Failed: 0",
+            "\n\n[INFO] Messages:\nTransport: UDP, TCP Connections: 0, Shared Memory Rings: 0, Streams Sent: , Streams Received: ",
+            ", Unacknowledged: 0, Retransmissions: 0, Duplicates Suppressed: 0, Compressed: 0 (saved 0 characters)\n\n[INFO] Current job list:\n",
+            ", Capacity: , Labels: , Score: 0.00, Address: , Port: , Usage: 0.00%",
+            ", Weight: , Memory: MB, Disk: MB, Selector: , Key: , Deadline: , Parents: , Split: , Gang: , Range: ",
+            ", Status: QUEUED\n, Status: IN_PROGRESS\n, Status: STOLEN\n, Status: CANCELLED\n, Status: SENT\n, Status: COMPLETE\n",
+            ", JobStatus: WAITING\n, JobStatus: ALLOCATED\n, JobStatus: SPLIT\n, JobStatus: REQUESTED_CANCEL\n",
+            ", JobStatus: CANCELLED\n, JobStatus: COALESCED\n, JobStatus: REJECTED\n, JobStatus: UNALLOCATED\n",
+            " --- Allocation Information: Node: NULL, JobStatus: SENT\n",
+            "Name: , Duration: , User: default, Group:  --- Allocation Information: Node: , JobStatus: COMPLETE\n",
+            "Name: , Duration: , User: default --- Allocation Information: Node: , JobStatus: SENT\n",
+            "Name: , Duration: 1, User: default --- Allocation Information: Node: , JobStatus: COMPLETE\n"
+    ).getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Compression has no state, so is never created
+     */
+    private Compression() {
+    }
+
+    /**
+     * Deflate a message with the preset dictionary and encode it as Base64
+     *
+     * @param message The message to compress
+     *
+     * @return The length of the original message in bytes, a ',' and the Base64 encoded deflated message
+     */
+    public static String compress(String message) {
+        byte[] data = message.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 4 + 64);
+        byte[] buffer = new byte[8192];
+
+        Deflater deflater = new Deflater();
+        deflater.setDictionary(DICTIONARY);
+        deflater.setInput(data);
+        deflater.finish();
+
+        while (!deflater.finished()) {
+            compressed.write(buffer, 0, deflater.deflate(buffer));
+        }
+
+        deflater.end();
+
+        return data.length + "," + Base64.getEncoder().encodeToString(compressed.toByteArray());
+    }
+
+    /**
+     * Decode and inflate a message compressed by compress
+     *
+     * @param compressed    The compressed message, being the length of the original message in bytes, a ',' and the
+     *                      Base64 encoded deflated message
+     * @param maximumLength The longest original message accepted, in bytes
+     *
+     * @return The original message
+     *
+     * @throws DataFormatException When the compressed message is malformed or longer than allowed
+     */
+    public static String decompress(String compressed, int maximumLength) throws DataFormatException {
+        String[] args = compressed.split(",", 2);
+
+        if (args.length != 2) {
+            throw new DataFormatException("Missing the length of the original message");
+        }
+
+        int length;
+        byte[] data;
+
+        try {
+            length = Integer.parseInt(args[0]);
+            data = Base64.getDecoder().decode(args[1]);
+        } catch (IllegalArgumentException e) {
+            throw new DataFormatException(e.getMessage());
+        }
+
+        if (length < 0 || length > maximumLength) {
+            throw new DataFormatException("Original message of " + length + " bytes exceeds the maximum length");
+        }
+
+        byte[] message = new byte[length];
+        int inflated = 0;
+
+        Inflater inflater = new Inflater();
+        inflater.setInput(data);
+
+        try {
+            while (!inflater.finished()) {
+                int count = inflater.inflate(message, inflated, length - inflated);
+
+                if (count == 0 && inflater.needsDictionary()) {
+                    inflater.setDictionary(DICTIONARY);
+                } else if (count == 0 && (inflater.needsInput() || inflated == length)) {
+                    throw new DataFormatException("Compressed message doesn't match its original length");
+                }
+
+                inflated += count;
+            }
+        } finally {
+            inflater.end();
+        }
+
+        if (inflated != length) {
+            throw new DataFormatException("Compressed message doesn't match its original length");
+        }
+
+        return new String(message, StandardCharsets.UTF_8);
+    }
+}
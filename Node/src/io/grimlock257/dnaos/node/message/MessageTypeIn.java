@@ -15,5 +15,6 @@ public enum MessageTypeIn {
     DATA_DUMP_NODE,
     CANCEL_JOB_REQUEST,
     IS_ALIVE,
+    STEAL_JOB_REQUEST,
     UNKNOWN
 }
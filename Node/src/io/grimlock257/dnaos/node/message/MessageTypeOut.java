@@ -13,5 +13,8 @@ public enum MessageTypeOut {
     COMPLETE_JOB,
     DATA_DUMP_NODE,
     CANCEL_JOB_CONFIRM,
-    IS_ALIVE_CONFIRM
+    IS_ALIVE_CONFIRM,
+    STEAL_JOB_CONFIRM,
+    STEAL_JOB_FAILURE,
+    CAPACITY_UPDATE
 }
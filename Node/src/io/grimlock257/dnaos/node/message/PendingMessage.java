@@ -0,0 +1,66 @@
+package io.grimlock257.dnaos.node.message;
+
+/**
+ * Represents a message which has been sent reliably but not yet acknowledged by its recipient, within the Node project
+ *
+ * Adam Watson
+ * Year 2 - Computer Systems Engineering
+ * Distributed Network Architecture & Operating Systems Module CW-2
+ */
+public class PendingMessage {
+    private long sequence;
+    private String message;
+
+    // When the message was last sent and how many times it has been sent
+    private long lastSent;
+    private int attempts;
+
+    /**
+     * Create a new pending message, which is sent for the first time straight away
+     *
+     * @param sequence The sequence number of the message
+     * @param message  The message
+     */
+    public PendingMessage(long sequence, String message) {
+        this.sequence = sequence;
+        this.message = message;
+        this.lastSent = System.currentTimeMillis();
+        this.attempts = 1;
+    }
+
+    /**
+     * @return The sequence number of the message
+     */
+    public long getSequence() {
+        return this.sequence;
+    }
+
+    /**
+     * @return The message
+     */
+    public String getMessage() {
+        return this.message;
+    }
+
+    /**
+     * @return When the message was last sent, in milliseconds
+     */
+    public long getLastSent() {
+        return this.lastSent;
+    }
+
+    /**
+     * @return How many times the message has been sent
+     */
+    public int getAttempts() {
+        return this.attempts;
+    }
+
+    /**
+     * Record the message being sent again
+     */
+    public void recordRetransmission() {
+        this.lastSent = System.currentTimeMillis();
+        this.attempts++;
+    }
+}
@@ -0,0 +1,212 @@
+package io.grimlock257.dnaos.node.message;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * Represents a single producer, single consumer ring buffer of messages in a memory mapped file, within the Node
+ * project
+ * The file starts with the total bytes ever written and the total bytes ever read, each on its own cache line, followed
+ * by the ring of records, each being the length of the message in bytes followed by the message. A record which
+ * doesn't fit before the end of the ring is preceded by a padding marker and written from the start of the ring
+ *
+ * Adam Watson
+ * Year 2 - Computer Systems Engineering
+ * Distributed Network Architecture & Operating Systems Module CW-2
+ */
+public class SharedMemoryRing {
+    // Where the write and read positions are kept, on separate cache lines, and where the ring itself starts
+    private static final int HEAD_OFFSET = 0;
+    private static final int TAIL_OFFSET = 64;
+    private static final int HEADER_SIZE = 128;
+
+    // The length written in place of a record to mark the rest of the ring as padding
+    private static final int PADDING = -1;
+
+    // Reads and writes the positions with the memory ordering needed to share them with the other program
+    private static final VarHandle POSITION = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private File file;
+    private MappedByteBuffer buffer;
+    private int capacity;
+
+    // Separate views of the buffer for copying messages in and out, so the writer and reader never share a position
+    private ByteBuffer writeView;
+    private ByteBuffer readView;
+
+    /**
+     * Map a ring buffer file into memory
+     *
+     * @param file   The file of the ring buffer
+     * @param buffer The memory mapped contents of the file
+     */
+    private SharedMemoryRing(File file, MappedByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+        this.buffer.order(ByteOrder.nativeOrder());
+        this.capacity = buffer.capacity() - HEADER_SIZE;
+        this.writeView = buffer.duplicate();
+        this.readView = buffer.duplicate();
+    }
+
+    /**
+     * Create a new, empty ring buffer file to write messages to. The file is created under a temporary name and then
+     * renamed, so the program reading it never sees a file that isn't fully sized
+     *
+     * @param file     The file to create
+     * @param capacity The size of the ring in bytes, must be a power of two
+     *
+     * @return The ring buffer
+     *
+     * @throws IOException When the file can't be created or mapped
+     */
+    public static SharedMemoryRing create(File file, int capacity) throws IOException {
+        File temporaryFile = new File(file.getPath() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temporaryFile.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+            return new SharedMemoryRing(file, buffer);
+        } catch (IOException e) {
+            temporaryFile.delete();
+
+            throw e;
+        }
+    }
+
+    /**
+     * Open an existing ring buffer file to read messages from
+     *
+     * @param file The file to open
+     *
+     * @return The ring buffer
+     *
+     * @throws IOException When the file can't be opened or mapped
+     */
+    public static SharedMemoryRing open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() <= HEADER_SIZE) {
+                throw new IOException("Ring buffer file '" + file + "' is too small");
+            }
+
+            return new SharedMemoryRing(file, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+        }
+    }
+
+    /**
+     * @return The file of the ring buffer
+     */
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * Write a message to the ring, if there is room for it. Only one program may write to a ring
+     *
+     * @param message The message to write
+     *
+     * @return Whether or not the message was written, false if it is too large or the ring is too full
+     */
+    public synchronized boolean offer(String message) {
+        byte[] data = message.getBytes(StandardCharsets.UTF_8);
+        int recordSize = align(4 + data.length);
+
+        if (recordSize > capacity) {
+            return false;
+        }
+
+        long head = (long) POSITION.getOpaque(buffer, HEAD_OFFSET);
+        long tail = (long) POSITION.getAcquire(buffer, TAIL_OFFSET);
+        int index = (int) (head & (capacity - 1));
+
+        // Skip to the start of the ring if the record would run past the end of it
+        int padding = index + recordSize > capacity ? capacity - index : 0;
+
+        if (capacity - (head - tail) < padding + recordSize) {
+            return false;
+        }
+
+        if (padding > 0) {
+            buffer.putInt(HEADER_SIZE + index, PADDING);
+            index = 0;
+        }
+
+        buffer.putInt(HEADER_SIZE + index, data.length);
+
+        writeView.position(HEADER_SIZE + index + 4);
+        writeView.put(data);
+
+        // Publish the record only once it has been fully written
+        POSITION.setRelease(buffer, HEAD_OFFSET, head + padding + recordSize);
+
+        return true;
+    }
+
+    /**
+     * Read every message waiting in the ring. Only one program may read from a ring
+     *
+     * @return The messages read, empty if there are none
+     */
+    public ArrayList<String> poll() {
+        ArrayList<String> messages = new ArrayList<>();
+
+        long head = (long) POSITION.getAcquire(buffer, HEAD_OFFSET);
+        long tail = (long) POSITION.getOpaque(buffer, TAIL_OFFSET);
+
+        while (tail < head) {
+            int index = (int) (tail & (capacity - 1));
+            int length = buffer.getInt(HEADER_SIZE + index);
+
+            if (length == PADDING) {
+                tail += capacity - index;
+
+                continue;
+            }
+
+            byte[] data = new byte[length];
+
+            readView.position(HEADER_SIZE + index + 4);
+            readView.get(data);
+
+            messages.add(new String(data, StandardCharsets.UTF_8));
+
+            tail += align(4 + length);
+        }
+
+        // Free the space read so the writer can reuse it
+        POSITION.setRelease(buffer, TAIL_OFFSET, tail);
+
+        return messages;
+    }
+
+    /**
+     * @return Whether or not any messages written to the ring haven't been read yet
+     */
+    public boolean hasUnread() {
+        return (long) POSITION.getAcquire(buffer, HEAD_OFFSET) != (long) POSITION.getAcquire(buffer, TAIL_OFFSET);
+    }
+
+    /**
+     * Round a record size up to a whole number of ints, so that every length is aligned
+     *
+     * @param size The size in bytes
+     *
+     * @return The aligned size in bytes
+     */
+    private static int align(int size) {
+        return (size + 3) & ~3;
+    }
+}
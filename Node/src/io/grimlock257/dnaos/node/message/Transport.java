@@ -0,0 +1,17 @@
+package io.grimlock257.dnaos.node.message;
+
+/**
+ * Enum of the transports that messages can be sent over
+ * UDP sends each message reliably as datagrams, TCP sends each message as a length prefixed frame over a persistent
+ * connection to the recipient, and SHM writes each message to a ring buffer in shared memory for a recipient on the
+ * same host, falling back to UDP for any other recipient. Messages are always received over all three
+ *
+ * Adam Watson
+ * Year 2 - Computer Systems Engineering
+ * Distributed Network Architecture & Operating Systems Module CW-2
+ */
+public enum Transport {
+    UDP,
+    TCP,
+    SHM
+}